@@ -0,0 +1,62 @@
+-- 点赞系统表结构（blog / thumb / user 为初始表，以下为后续新增的表与索引）
+use thumb_db;
+
+-- 点赞事务发件箱：与点赞写库同事务写入，提交后由 ThumbOutboxRelay 投递到 Redis 与本地缓存
+create table if not exists thumb_outbox
+(
+    id         bigint auto_increment primary key,
+    userId     bigint                             not null,
+    blogId     bigint                             not null,
+    thumbId    bigint                             null comment '点赞记录ID',
+    type       tinyint                            not null comment '1 点赞，-1 取消点赞',
+    createTime datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    index idx_createTime (createTime)
+) comment '点赞事务发件箱';
+
+-- 热点博客分片点赞计数：写入随机落到某个槽，定时合并回 blog.thumbCount
+create table if not exists blog_thumb_slot
+(
+    blogId     bigint           not null,
+    slot       int              not null comment '计数槽编号',
+    thumbCount bigint default 0 not null comment '未合并的点赞增量',
+    primary key (blogId, slot)
+) comment '热点博客分片点赞计数';
+
+-- 同一用户对同一博客只有一条点赞记录：事件流消费者以 insert ignore 幂等写入，重复投递不会产生重复记录
+-- 已有数据中存在重复记录时唯一键无法创建，先删除重复记录（每组保留 id 最小的一条）；
+-- blog.thumbCount 中多计的部分由点赞数校对任务按 thumb 记录修正
+delete t1
+from thumb t1
+         join thumb t2 on t1.userId = t2.userId and t1.blogId = t2.blogId and t1.id > t2.id;
+alter table thumb
+    add unique key uk_userId_blogId (userId, blogId);
+
+-- 临时点赞分块落库记录：与分块写库同事务写入，重试时据此跳过已落库的分块
+create table if not exists thumb_sync_checkpoint
+(
+    chunkId      bigint                             not null primary key comment '分块ID',
+    tempThumbKey varchar(128)                       not null comment '分块所属的临时点赞记录键',
+    createTime   datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    index idx_createTime (createTime)
+) comment '临时点赞分块落库记录';
+
+-- 临时点赞分片同步租约：每个分片同一时间只由一个节点同步，fence 为栅栏令牌，每次易主加一
+create table if not exists thumb_sync_lease
+(
+    shard      int                                not null primary key comment '时间片分片编号',
+    owner      varchar(128)                       not null comment '持有租约的节点',
+    fence      bigint   default 0                 not null comment '栅栏令牌',
+    expireTime datetime default CURRENT_TIMESTAMP not null comment '租约过期时间'
+) comment '临时点赞分片同步租约';
+
+-- 按博客统计点赞记录数（点赞数校对任务）
+alter table thumb
+    add index idx_blogId (blogId);
+
+-- 博客列表按 (createTime, id) 键集分页
+alter table blog
+    add index idx_createTime_id (createTime, id);
+
+-- 按用户与博客查询未投递的发件箱记录（点赞前判断 Redis 状态是否可信、按ID顺序投递）
+alter table thumb_outbox
+    add index idx_userId_blogId (userId, blogId);
@@ -0,0 +1,432 @@
+package com.shen.thumbsups.config;
+
+import com.shen.thumbsups.domain.enums.ThumbMembershipStoreEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 点赞相关配置（application.yml 中 thumb 前缀）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "thumb")
+public class ThumbProperties {
+
+    /**
+     * 事务发件箱配置
+     */
+    private Outbox outbox = new Outbox();
+
+    /**
+     * 热点博客点赞数分片配置
+     */
+    private Stripe stripe = new Stripe();
+
+    /**
+     * 热点博客点赞增量本地聚合配置
+     */
+    private Aggregate aggregate = new Aggregate();
+
+    /**
+     * 用户点赞记录存储配置
+     */
+    private Membership membership = new Membership();
+
+    /**
+     * 点赞临时数据时间片配置
+     */
+    private Slice slice = new Slice();
+
+    /**
+     * Redis Stream 点赞事件缓冲配置
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * Redis 降级时的本地预写日志与断路器配置
+     */
+    private Wal wal = new Wal();
+
+    /**
+     * 临时点赞数据同步配置
+     */
+    private Sync sync = new Sync();
+
+    /**
+     * 多节点同步租约配置
+     */
+    private Lease lease = new Lease();
+
+    /**
+     * 补偿任务配置
+     */
+    private Compensate compensate = new Compensate();
+
+    /**
+     * 博客点赞数校对配置
+     */
+    private Reconcile reconcile = new Reconcile();
+
+    /**
+     * 博客详情缓存配置
+     */
+    private DetailCache detailCache = new DetailCache();
+
+    /**
+     * 热门博客（近期点赞最多）配置
+     */
+    private Trending trending = new Trending();
+
+    /**
+     * 博客每分钟点赞数配置
+     */
+    private Velocity velocity = new Velocity();
+
+    @Data
+    public static class Outbox {
+
+        /**
+         * 补偿投递每批处理的记录数
+         */
+        private int batchSize = 500;
+
+        /**
+         * 记录写入多久后才由补偿任务接管（秒），避免与提交后的即时投递抢同一条记录
+         */
+        private int graceSeconds = 10;
+    }
+
+    @Data
+    public static class Stripe {
+
+        /**
+         * 是否对热点博客启用分片计数（数据库模式下优先于本地聚合）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 每篇热点博客的计数槽数量
+         */
+        private int slots = 16;
+    }
+
+    @Data
+    public static class Aggregate {
+
+        /**
+         * 是否在本地聚合热点博客的点赞增量
+         * Redis 模式下聚合实时点赞计数；数据库模式下只在关闭分片计数（stripe.enabled = false）时聚合 blog.thumbCount
+         */
+        private boolean enabled = true;
+
+        /**
+         * 刷新间隔（毫秒）
+         */
+        private long flushIntervalMs = 200;
+
+        /**
+         * 博客连续多少轮没有增量后释放其本地计数器
+         */
+        private int idleRounds = 50;
+    }
+
+    @Data
+    public static class Membership {
+
+        /**
+         * 存储方式，BITMAP 仅适用于 Redis 缓冲写入（ThumbServiceRedisImpl），数据库模式需要在 Hash 中保存点赞记录ID
+         */
+        private ThumbMembershipStoreEnum store = ThumbMembershipStoreEnum.HASH;
+
+        /**
+         * 启动时把 Hash 中的点赞记录迁移到位图（需要位图模式），由持有 0 号分片租约的节点执行，未完成时定期重试
+         */
+        private boolean migrateOnStartup = false;
+
+        /**
+         * 迁移后删除原 Hash，在设置迁移完成标记之后执行
+         */
+        private boolean deleteHashAfterMigrate = false;
+    }
+
+    @Data
+    public static class Slice {
+
+        /**
+         * 时间片长度（秒）
+         */
+        private int windowSeconds = 10;
+
+        /**
+         * 每个时间片按 userId 拆分的分片数
+         */
+        private int shards = 8;
+    }
+
+    @Data
+    public static class Stream {
+
+        /**
+         * 是否以 Redis Stream 事件流代替时间片临时 Hash 缓冲点赞写入
+         */
+        private boolean enabled = false;
+
+        /**
+         * 本节点是否启动消费者；同一分片只应由一个消费者按顺序处理
+         */
+        private boolean consume = true;
+
+        /**
+         * 事件流分片数，按 userId 路由，同一用户的事件始终在同一分片内有序
+         */
+        private int shards = 8;
+
+        /**
+         * 消费者（虚拟线程）数量，分片按编号轮流分配给消费者
+         */
+        private int consumers = 8;
+
+        /**
+         * 每次读取的事件数
+         */
+        private int batchSize = 500;
+
+        /**
+         * 读取阻塞 / 空闲等待时间（毫秒）
+         */
+        private long pollIntervalMs = 200;
+
+        /**
+         * 待确认事件空闲多久后被重新认领（毫秒）
+         */
+        private long claimIdleMs = 30000;
+    }
+
+    @Data
+    public static class Wal {
+
+        /**
+         * 是否在 Redis 降级时把点赞事件写入本地日志
+         */
+        private boolean enabled = true;
+
+        /**
+         * 日志目录
+         */
+        private String dir = "data/thumb-wal";
+
+        /**
+         * 单个日志段文件大小（字节）
+         */
+        private int segmentBytes = 16 * 1024 * 1024;
+
+        /**
+         * 写入路径上单次 Redis 调用的超时时间（毫秒），超时按失败计
+         */
+        private long callTimeoutMs = 200;
+
+        /**
+         * 超过该耗时（毫秒）的调用按慢调用计
+         */
+        private long slowCallMs = 100;
+
+        /**
+         * 连续失败或慢调用达到该次数后断开，改写本地日志
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * 断开后至少等待多久（毫秒）再探测 Redis
+         */
+        private long openMs = 5000;
+    }
+
+    @Data
+    public static class Sync {
+
+        /**
+         * 每次 HSCAN 读取并落库的记录数，同步占用的内存与单条 SQL 的大小都以此为上限
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * 每个临时点赞记录键按 blogId 拆分的分区数，各分区并行落库；修改前需等待同步中的数据落库完成
+         */
+        private int partitions = 8;
+
+        /**
+         * 同时执行的同步任务上限（定时同步与补偿共用），限制数据库连接与 Redis 压力
+         */
+        private int maxConcurrency = 16;
+
+        /**
+         * 积压时的最短同步间隔（毫秒）
+         */
+        private long minIntervalMs = 500;
+
+        /**
+         * 空闲时逐步退避到的最长同步间隔（毫秒）
+         */
+        private long maxIntervalMs = 10000;
+
+        /**
+         * 单次同步最多覆盖的时间片数，落后时一次同步多个时间片
+         */
+        private int maxSlicesPerRun = 30;
+
+        /**
+         * 单次待同步记录数达到该值时按最短间隔连续同步
+         */
+        private long burstEntries = 5000;
+
+        /**
+         * 写入点赞记录时每条 INSERT 语句的行数
+         */
+        private int insertBatchSize = 500;
+
+        /**
+         * 删除点赞记录时每条 DELETE 语句的 (userId, blogId) 个数
+         */
+        private int deleteBatchSize = 500;
+
+        /**
+         * 更新博客点赞总数时每个分块的博客数
+         */
+        private int countBatchSize = 200;
+    }
+
+    @Data
+    public static class Lease {
+
+        /**
+         * 是否按租约把临时点赞分片分配给各节点同步；关闭时本节点同步全部分片
+         */
+        private boolean enabled = true;
+
+        /**
+         * 租约有效期（秒），节点宕机后其分片在过期后由其他节点接管
+         */
+        private int leaseSeconds = 30;
+
+        /**
+         * 续约与重新均衡的间隔（秒），应明显小于租约有效期
+         */
+        private int renewSeconds = 10;
+    }
+
+    @Data
+    public static class Compensate {
+
+        /**
+         * 每轮补偿的间隔（毫秒），补偿任务持续低速运行
+         */
+        private long intervalMs = 1000;
+
+        /**
+         * 每轮 SCAN 的 COUNT，限制每轮遍历的键数
+         */
+        private int scanCount = 200;
+
+        /**
+         * 每轮最多交给同步引擎的键数，超出部分留到下一轮
+         */
+        private int maxKeysPerRun = 20;
+    }
+
+    @Data
+    public static class Reconcile {
+
+        /**
+         * 是否开启 blog.thumbCount 校对
+         */
+        private boolean enabled = true;
+
+        /**
+         * 每轮校对的间隔（毫秒）
+         */
+        private long intervalMs = 5000;
+
+        /**
+         * 每轮按ID顺序校对的博客数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 博客实时点赞计数校对时待同步记录数的上限，超过时跳过该轮校对
+         */
+        private long liveMaxRecords = 100000;
+    }
+
+    @Data
+    public static class DetailCache {
+
+        /**
+         * 本地缓存（仅热点博客）的最大条数
+         */
+        private int localMaxSize = 1000;
+
+        /**
+         * 本地缓存过期时间（秒），应小于 Redis 缓存过期时间
+         */
+        private int localTtlSeconds = 10;
+
+        /**
+         * Redis 缓存过期时间（秒）
+         */
+        private int redisTtlSeconds = 300;
+    }
+
+    @Data
+    public static class Trending {
+
+        /**
+         * 统计最近多少分钟内的点赞
+         */
+        private int windowMinutes = 10;
+
+        /**
+         * 时间桶长度（秒），每个桶结束后把本节点的 TopK 合并到 Redis
+         */
+        private int bucketSeconds = 10;
+
+        /**
+         * 每个时间桶、每个节点保留的博客数，也是接口最多返回的条数
+         */
+        private int topK = 100;
+
+        /**
+         * 本地 HeavyKeeper 每层的桶数量
+         */
+        private int sketchWidth = 10000;
+
+        /**
+         * 每个时间桶 ZSET 的最大成员数，超出时淘汰分数最低的成员
+         */
+        private int zsetMaxSize = 1000;
+
+        /**
+         * 从 Redis 合并窗口内时间桶、刷新内存榜单的间隔（毫秒）
+         */
+        private long refreshMs = 5000;
+    }
+
+    @Data
+    public static class Velocity {
+
+        /**
+         * 保留最近多少分钟（环形缓冲区长度），不超过 32767
+         */
+        private int retentionMinutes = 1440;
+
+        /**
+         * 快照到 Redis 的间隔（秒）
+         */
+        private int snapshotSeconds = 30;
+
+        /**
+         * 超过多少分钟没有点赞的缓冲区在快照后从内存移除
+         */
+        private int localIdleMinutes = 60;
+    }
+}
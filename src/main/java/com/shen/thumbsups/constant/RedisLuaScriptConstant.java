@@ -5,16 +5,44 @@ import org.springframework.data.redis.core.script.RedisScript;
 
 public class RedisLuaScriptConstant {
 
+    /**
+     * 从游标 0 开始 HSCAN，直到取够 count 条记录或游标回到 0（整个 Hash 遍历完）
+     * HDEL 会让 Hash 缩容并留下稀疏的桶，单次 HSCAN 可能一条都取不到，只有游标回到 0 才能说明 Hash 已空；
+     * 脚本执行期间 Hash 不会被修改，遍历过程中重复返回的记录按 field 去重
+     */
+    private static final String SCAN_FIELDS_FUNCTION = """
+            local function scanFields(key, count)
+                local fields = {}
+                local seen = {}
+                local cursor = '0'
+                repeat
+                    local reply = redis.call('HSCAN', key, cursor, 'COUNT', count)
+                    cursor = reply[1]
+                    local page = reply[2]
+                    for i = 1, #page, 2 do
+                        if not seen[page[i]] then
+                            seen[page[i]] = true
+                            fields[#fields + 1] = page[i]
+                            fields[#fields + 1] = page[i + 1]
+                        end
+                    end
+                until cursor == '0' or #fields >= count * 2
+                return fields
+            end
+            """;
+
     /**
      * 用户点赞操作Lua脚本（保证原子性）
      *
      * KEYS参数说明：
      * [1] tempThumbKey -> 临时点赞计数器Hash结构键名（存储userId:blogId与点赞次数的映射）
      * [2] userThumbKey -> 用户点赞记录Hash结构键名（存储blogId与点赞状态的映射）
+     * [3] blogThumbCountKey -> 博客实时点赞计数键名（尚未同步到数据库的点赞增量）
      *
      * ARGV参数说明：
      * [1] userId -> 执行点赞操作的用户ID
      * [2] blogId -> 被点赞的博客ID
+     * [3] countInScript -> 1 由脚本更新实时计数；0 由本地聚合器批量更新（热点博客）
      *
      * 返回值说明：
      * 1  -> 点赞成功
@@ -23,8 +51,10 @@ public class RedisLuaScriptConstant {
     public static final RedisScript<Long> THUMB_SCRIPT = new DefaultRedisScript<>("""
             local tempThumbKey = KEYS[1]
             local userThumbKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
             local userId = ARGV[1]
             local blogId = ARGV[2]
+            local countInScript = ARGV[3]
             
             if redis.call('HEXISTS', userThumbKey, blogId) == 1 then
                 return -1
@@ -36,6 +66,9 @@ public class RedisLuaScriptConstant {
             local newNumber = oldNumber + 1
             redis.call('HSET', tempThumbKey, hashKey, newNumber)
             redis.call('HSET', userThumbKey, blogId, 1)
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, 1)
+            end
             
             return 1
             """, Long.class);
@@ -47,10 +80,12 @@ public class RedisLuaScriptConstant {
      * KEYS参数说明：
      * [1] tempThumbKey -> 临时点赞计数器Hash结构键名（存储userId:blogId与点赞次数的映射）
      * [2] userThumbKey -> 用户点赞记录Hash结构键名（存储blogId与点赞状态的映射）
+     * [3] blogThumbCountKey -> 博客实时点赞计数键名（尚未同步到数据库的点赞增量）
      *
      * ARGV参数说明：
      * [1] userId -> 执行点赞操作的用户ID
      * [2] blogId -> 被点赞的博客ID
+     * [3] countInScript -> 1 由脚本更新实时计数；0 由本地聚合器批量更新（热点博客）
      *
      * 返回值说明：
      * 1  -> 取消成功
@@ -59,8 +94,10 @@ public class RedisLuaScriptConstant {
     public static final RedisScript<Long> UNTHUMB_SCRIPT = new DefaultRedisScript<>("""
             local tempThumbKey = KEYS[1]
             local userThumbKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
             local userId = ARGV[1]
             local blogId = ARGV[2]
+            local countInScript = ARGV[3]
             
             if redis.call('HEXISTS', userThumbKey, blogId) ~= 1 then
                 return -1
@@ -73,7 +110,468 @@ public class RedisLuaScriptConstant {
             
             redis.call('HSET', tempThumbKey, hashKey, newNumber)
             redis.call('HDEL', userThumbKey, blogId)
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, -1)
+            end
+            
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 用户点赞操作Lua脚本（位图存储点赞记录）
+     *
+     * KEYS参数说明：
+     * [1] tempThumbKey      -> 临时点赞计数器Hash结构键名（存储userId:blogId与点赞次数的映射）
+     * [2] userThumbBitmapKey -> 用户点赞位图键名（按博客ID区间分桶）
+     * [3] blogThumbCountKey -> 博客实时点赞计数键名（尚未同步到数据库的点赞增量）
+     * [4] userThumbKey      -> 迁移前的用户点赞记录Hash结构键名
+     *
+     * ARGV参数说明：
+     * [1] userId -> 执行点赞操作的用户ID
+     * [2] blogId -> 被点赞的博客ID
+     * [3] offset -> 博客ID在位图桶中的偏移量
+     * [4] countInScript -> 1 由脚本更新实时计数；0 由本地聚合器批量更新（热点博客）
+     * [5] readHash -> 1 Hash 到位图的迁移尚未完成，位图中没有记录时再查 Hash；取消点赞同时删除 Hash 中的记录
+     *
+     * 返回值说明：
+     * 1  -> 点赞成功
+     * -1 -> 重复点赞（已存在点赞记录）
+     */
+    public static final RedisScript<Long> THUMB_BITMAP_SCRIPT = new DefaultRedisScript<>("""
+            local tempThumbKey = KEYS[1]
+            local userThumbBitmapKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
+            local userId = ARGV[1]
+            local blogId = ARGV[2]
+            local offset = tonumber(ARGV[3])
+            local countInScript = ARGV[4]
+            
+            if redis.call('GETBIT', userThumbBitmapKey, offset) == 1 then
+                return -1
+            end
+            if ARGV[5] == '1' and redis.call('HEXISTS', KEYS[4], blogId) == 1 then
+                return -1
+            end
+            
+            local hashKey = userId .. ':' .. blogId
+            local oldNumber = tonumber(redis.call('HGET', tempThumbKey, hashKey) or 0)
+            
+            local newNumber = oldNumber + 1
+            redis.call('HSET', tempThumbKey, hashKey, newNumber)
+            redis.call('SETBIT', userThumbBitmapKey, offset, 1)
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, 1)
+            end
+            
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 用户取消点赞操作Lua脚本（位图存储点赞记录）
+     *
+     * KEYS / ARGV 参数同 THUMB_BITMAP_SCRIPT
+     *
+     * 返回值说明：
+     * 1  -> 取消成功
+     * -1 -> 未点赞
+     */
+    public static final RedisScript<Long> UNTHUMB_BITMAP_SCRIPT = new DefaultRedisScript<>("""
+            local tempThumbKey = KEYS[1]
+            local userThumbBitmapKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
+            local userId = ARGV[1]
+            local blogId = ARGV[2]
+            local offset = tonumber(ARGV[3])
+            local countInScript = ARGV[4]
+            
+            if redis.call('GETBIT', userThumbBitmapKey, offset) ~= 1
+                    and (ARGV[5] ~= '1' or redis.call('HEXISTS', KEYS[4], blogId) ~= 1) then
+                return -1
+            end
+            
+            local hashKey = userId .. ':' .. blogId
+            local oldNumber = tonumber(redis.call('HGET', tempThumbKey, hashKey) or 0)
+            
+            local newNumber = oldNumber - 1
+            
+            redis.call('HSET', tempThumbKey, hashKey, newNumber)
+            redis.call('SETBIT', userThumbBitmapKey, offset, 0)
+            if ARGV[5] == '1' then
+                redis.call('HDEL', KEYS[4], blogId)
+            end
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, -1)
+            end
+            
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 用户点赞操作Lua脚本（事件流缓冲）
+     * 与 THUMB_SCRIPT 相同，只是把点赞事件追加到事件流，而不是累加时间片临时 Hash
+     *
+     * KEYS参数说明：
+     * [1] thumbStreamKey -> 点赞事件流键名（按 userId 分片）
+     * [2] userThumbKey -> 用户点赞记录Hash结构键名（存储blogId与点赞状态的映射）
+     * [3] blogThumbCountKey -> 博客实时点赞计数键名（尚未同步到数据库的点赞增量）
+     *
+     * ARGV参数同 THUMB_SCRIPT
+     */
+    public static final RedisScript<Long> THUMB_STREAM_SCRIPT = new DefaultRedisScript<>("""
+            local thumbStreamKey = KEYS[1]
+            local userThumbKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
+            local userId = ARGV[1]
+            local blogId = ARGV[2]
+            local countInScript = ARGV[3]
+            
+            if redis.call('HEXISTS', userThumbKey, blogId) == 1 then
+                return -1
+            end
+            
+            redis.call('XADD', thumbStreamKey, '*', 'userId', userId, 'blogId', blogId, 'type', 1)
+            redis.call('HSET', userThumbKey, blogId, 1)
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, 1)
+            end
+            
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 用户取消点赞操作Lua脚本（事件流缓冲）
+     *
+     * KEYS / ARGV 参数同 THUMB_STREAM_SCRIPT
+     *
+     * 返回值说明：
+     * 1  -> 取消成功
+     * -1 -> 未点赞
+     */
+    public static final RedisScript<Long> UNTHUMB_STREAM_SCRIPT = new DefaultRedisScript<>("""
+            local thumbStreamKey = KEYS[1]
+            local userThumbKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
+            local userId = ARGV[1]
+            local blogId = ARGV[2]
+            local countInScript = ARGV[3]
+            
+            if redis.call('HEXISTS', userThumbKey, blogId) ~= 1 then
+                return -1
+            end
+            
+            redis.call('XADD', thumbStreamKey, '*', 'userId', userId, 'blogId', blogId, 'type', -1)
+            redis.call('HDEL', userThumbKey, blogId)
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, -1)
+            end
+            
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 用户点赞操作Lua脚本（位图存储点赞记录，事件流缓冲）
+     *
+     * KEYS参数同 THUMB_BITMAP_SCRIPT，其中 [1] 为点赞事件流键名
+     * ARGV参数同 THUMB_BITMAP_SCRIPT
+     */
+    public static final RedisScript<Long> THUMB_BITMAP_STREAM_SCRIPT = new DefaultRedisScript<>("""
+            local thumbStreamKey = KEYS[1]
+            local userThumbBitmapKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
+            local userId = ARGV[1]
+            local blogId = ARGV[2]
+            local offset = tonumber(ARGV[3])
+            local countInScript = ARGV[4]
+            
+            if redis.call('GETBIT', userThumbBitmapKey, offset) == 1 then
+                return -1
+            end
+            if ARGV[5] == '1' and redis.call('HEXISTS', KEYS[4], blogId) == 1 then
+                return -1
+            end
             
+            redis.call('XADD', thumbStreamKey, '*', 'userId', userId, 'blogId', blogId, 'type', 1)
+            redis.call('SETBIT', userThumbBitmapKey, offset, 1)
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, 1)
+            end
+            
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 用户取消点赞操作Lua脚本（位图存储点赞记录，事件流缓冲）
+     *
+     * KEYS / ARGV 参数同 THUMB_BITMAP_STREAM_SCRIPT
+     */
+    public static final RedisScript<Long> UNTHUMB_BITMAP_STREAM_SCRIPT = new DefaultRedisScript<>("""
+            local thumbStreamKey = KEYS[1]
+            local userThumbBitmapKey = KEYS[2]
+            local blogThumbCountKey = KEYS[3]
+            local userId = ARGV[1]
+            local blogId = ARGV[2]
+            local offset = tonumber(ARGV[3])
+            local countInScript = ARGV[4]
+            
+            if redis.call('GETBIT', userThumbBitmapKey, offset) ~= 1
+                    and (ARGV[5] ~= '1' or redis.call('HEXISTS', KEYS[4], blogId) ~= 1) then
+                return -1
+            end
+            
+            redis.call('XADD', thumbStreamKey, '*', 'userId', userId, 'blogId', blogId, 'type', -1)
+            redis.call('SETBIT', userThumbBitmapKey, offset, 0)
+            if ARGV[5] == '1' then
+                redis.call('HDEL', KEYS[4], blogId)
+            end
+            if countInScript == '1' then
+                redis.call('INCRBY', blogThumbCountKey, -1)
+            end
+            
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 迁移一条点赞记录：Hash 中仍有该记录时置位，迁移期间已取消的点赞（位图模式下同时删除 Hash 中的记录）不会被写回
+     *
+     * KEYS参数说明：
+     * [1] userThumbKey       -> 用户点赞记录Hash结构键名
+     * [2] userThumbBitmapKey -> 用户点赞位图键名
+     *
+     * ARGV参数说明：
+     * [1] blogId -> 博客ID
+     * [2] offset -> 博客ID在位图桶中的偏移量
+     *
+     * 返回值说明：
+     * 1 -> 已置位
+     * 0 -> Hash 中已没有该记录
+     */
+    public static final RedisScript<Long> MIGRATE_THUMB_BITMAP_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then
+                return 0
+            end
+            redis.call('SETBIT', KEYS[2], tonumber(ARGV[2]), 1)
             return 1
             """, Long.class);
+
+
+    /**
+     * 迁移期间查询是否点赞：位图中没有记录时再查 Hash
+     *
+     * KEYS参数说明：
+     * [1] userThumbBitmapKey -> 用户点赞位图键名
+     * [2] userThumbKey       -> 用户点赞记录Hash结构键名
+     *
+     * ARGV参数说明：
+     * [1] blogId -> 博客ID
+     * [2] offset -> 博客ID在位图桶中的偏移量
+     */
+    public static final RedisScript<Boolean> HAS_THUMB_BITMAP_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GETBIT', KEYS[1], tonumber(ARGV[2])) == 1 then
+                return 1
+            end
+            return redis.call('HEXISTS', KEYS[2], ARGV[1])
+            """, Boolean.class);
+
+
+    /**
+     * 临时点赞记录交接：把临时键整体改名为同步中的键，之后的写入自动进入新的临时键
+     * 上一次同步尚未完成（同步中的键或任一分区仍存在）时不改名，先处理完已交接的数据，避免 RENAME 覆盖
+     *
+     * KEYS参数说明：
+     * [1]      tempThumbKey -> 临时点赞记录键
+     * [2]      syncThumbKey -> 同步中的键
+     * [3..n+2] 同步中的键的分区，共 n 个
+     *
+     * 返回值说明：
+     * 1  -> 已交接
+     * 0  -> 临时键不存在，无需交接
+     * -1 -> 上一次同步未完成，本次不交接
+     */
+    public static final RedisScript<Long> HANDOFF_TEMP_THUMB_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            for i = 2, #KEYS do
+                if redis.call('EXISTS', KEYS[i]) == 1 then
+                    return -1
+                end
+            end
+            redis.call('RENAME', KEYS[1], KEYS[2])
+            return 1
+            """, Long.class);
+
+
+    /**
+     * 把同步中的键的一批记录按 blogId 移动到各分区，同一博客的记录始终落在同一分区
+     * 分区号取 blogId 末 9 位取模，避免超过 Lua 数值精度
+     * 分区中可能有上一次中断留下的同一 userId:blogId 记录，用 HINCRBY 累加，累加为 0 时删除该记录
+     *
+     * KEYS参数说明：
+     * [1]      syncThumbKey -> 同步中的键
+     * [2..n+1] 分区键，共 n 个
+     *
+     * ARGV参数说明：
+     * [1] count -> 本次移动的记录数
+     *
+     * 返回值说明：
+     * 移动的记录数，0 表示同步中的键已为空
+     */
+    public static final RedisScript<Long> PARTITION_THUMB_SCRIPT = new DefaultRedisScript<>(SCAN_FIELDS_FUNCTION + """
+            local syncThumbKey = KEYS[1]
+            local partitions = #KEYS - 1
+            
+            local fields = scanFields(syncThumbKey, tonumber(ARGV[1]))
+            if #fields == 0 then
+                return 0
+            end
+            
+            for i = 1, #fields, 2 do
+                local blogId = string.match(fields[i], ':(%d+)$')
+                local partitionKey = KEYS[tonumber(string.sub(blogId, -9)) % partitions + 2]
+                if redis.call('HINCRBY', partitionKey, fields[i], fields[i + 1]) == 0 then
+                    redis.call('HDEL', partitionKey, fields[i])
+                end
+                redis.call('HDEL', syncThumbKey, fields[i])
+            end
+            
+            return #fields / 2
+            """, Long.class);
+
+
+    /**
+     * 从同步中的键取出一个分块，移动到分块键，并记录分块ID
+     *
+     * KEYS参数说明：
+     * [1] syncThumbKey  -> 同步中的键（或其分区）
+     * [2] chunkThumbKey -> 分块键
+     *
+     * ARGV参数说明：
+     * [1] chunkSize -> 分块大小
+     * [2] chunkId   -> 分块ID，写入分块的 id field，落库时作为幂等依据
+     *
+     * 返回值说明：
+     * n  -> 取出的记录数，0 表示同步中的键已为空
+     * -1 -> 上一个分块尚未完成
+     */
+    public static final RedisScript<Long> TAKE_THUMB_CHUNK_SCRIPT = new DefaultRedisScript<>(SCAN_FIELDS_FUNCTION + """
+            local syncThumbKey = KEYS[1]
+            local chunkThumbKey = KEYS[2]
+            
+            if redis.call('EXISTS', chunkThumbKey) == 1 then
+                return -1
+            end
+            
+            local fields = scanFields(syncThumbKey, tonumber(ARGV[1]))
+            if #fields == 0 then
+                return 0
+            end
+            
+            redis.call('HSET', chunkThumbKey, 'id', ARGV[2], unpack(fields))
+            for i = 1, #fields, 2 do
+                redis.call('HDEL', syncThumbKey, fields[i])
+            end
+            
+            return #fields / 2
+            """, Long.class);
+
+
+    /**
+     * 分块落库后扣减博客实时点赞计数并删除分块，两步在同一脚本中完成：
+     * 分块存在说明尚未扣减，重试时不会重复扣减
+     *
+     * KEYS参数说明：
+     * [1]    chunkThumbKey -> 分块键
+     * [2..n] blogThumbCountKey -> 分块涉及的博客实时点赞计数键
+     *
+     * ARGV参数说明：
+     * [1..n-1] 对应博客已落库的增量
+     *
+     * 返回值说明：
+     * 1 -> 已完成
+     * 0 -> 分块已被删除（此前已完成）
+     */
+    public static final RedisScript<Long> FINISH_THUMB_CHUNK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            for i = 2, #KEYS do
+                redis.call('DECRBY', KEYS[i], ARGV[i - 1])
+            end
+            redis.call('DEL', KEYS[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * 点赞事件落库后确认并删除事件，同时扣减事件对应的博客实时点赞计数
+     * 只有 XACK 成功（事件此前未被确认）时才扣减，重复投递或多次执行不会重复扣减
+     *
+     * KEYS参数说明：
+     * [1]      thumbStreamKey -> 点赞事件流键名
+     * [2..n+1] 第 i 个事件对应的博客实时点赞计数键（无效事件传事件流键名）
+     *
+     * ARGV参数说明：
+     * [1]             group -> 消费组
+     * [2i] / [2i + 1] 第 i 个事件的ID / 需要扣减的增量（无效事件为 0）
+     *
+     * 返回值说明：
+     * 本次确认的事件数
+     */
+    public static final RedisScript<Long> ACK_THUMB_EVENTS_SCRIPT = new DefaultRedisScript<>("""
+            local thumbStreamKey = KEYS[1]
+            local group = ARGV[1]
+            local acked = 0
+            for i = 1, #KEYS - 1 do
+                local id = ARGV[2 * i]
+                local delta = tonumber(ARGV[2 * i + 1])
+                if redis.call('XACK', thumbStreamKey, group, id) == 1 then
+                    acked = acked + 1
+                    if delta ~= 0 then
+                        redis.call('DECRBY', KEYS[i + 1], delta)
+                    end
+                end
+                redis.call('XDEL', thumbStreamKey, id)
+            end
+            return acked
+            """, Long.class);
+
+    /**
+     * 删除消费组中已下线的消费者：除 owner 外没有待确认事件且空闲超过 minIdle 的消费者
+     * 检查与删除在同一脚本中，不会删除刚读取了事件的消费者（XGROUP DELCONSUMER 会丢弃其待确认事件）
+     *
+     * KEYS参数说明：
+     * [1] thumbStreamKey -> 点赞事件流键名
+     *
+     * ARGV参数说明：
+     * [1] group   -> 消费组
+     * [2] owner   -> 当前消费者，不删除
+     * [3] minIdle -> 最小空闲时间（毫秒）
+     *
+     * 返回值说明：
+     * 删除的消费者数
+     */
+    public static final RedisScript<Long> DELETE_IDLE_CONSUMERS_SCRIPT = new DefaultRedisScript<>("""
+            local thumbStreamKey = KEYS[1]
+            local group = ARGV[1]
+            local owner = ARGV[2]
+            local minIdle = tonumber(ARGV[3])
+            local deleted = 0
+            for _, info in ipairs(redis.call('XINFO', 'CONSUMERS', thumbStreamKey, group)) do
+                local consumer = {}
+                for i = 1, #info, 2 do
+                    consumer[info[i]] = info[i + 1]
+                end
+                if consumer['name'] ~= owner and consumer['pending'] == 0 and consumer['idle'] >= minIdle then
+                    redis.call('XGROUP', 'DELCONSUMER', thumbStreamKey, group, consumer['name'])
+                    deleted = deleted + 1
+                end
+            end
+            return deleted
+            """, Long.class);
 }
@@ -7,6 +7,112 @@ public interface ThumbConstant {
 
     String TEMP_THUMB_KEY_PREFIX = "thumb:temp:%s";
 
+    /**
+     * 分片临时点赞记录：thumb:temp:{sliceId:shard}，同一时间片按 userId 拆成多个哈希，由多个节点并行同步
+     * 点赞 / 同步脚本在一次调用中同时访问临时键、用户点赞键、计数键等多个键，只支持单机（主从）Redis，不支持集群
+     */
+    String TEMP_THUMB_SHARD_KEY = "thumb:temp:{%d:%d}";
+
+    /**
+     * 同步中的临时点赞记录：同步任务把 thumb:temp:xxx 整体改名为 thumb:sync:xxx 后再处理，之后的写入进入新的临时键
+     */
+    String SYNC_THUMB_KEY_PREFIX = "thumb:sync:%s";
+
+    /**
+     * 正在落库的临时点赞记录分块：thumb:chunk:xxx
+     */
+    String CHUNK_THUMB_KEY_PREFIX = "thumb:chunk:%s";
+
+    /**
+     * 同步中的键 / 分块键与分区编号之间的分隔符（旧格式的时间片键中含有冒号，不能用冒号分隔）
+     */
+    String THUMB_PARTITION_SEPARATOR = "#";
+
+    /**
+     * 分片同步水位：thumb:watermark:sync:{shard}，值为该分片已同步到的时间片ID
+     */
+    String SYNC_WATERMARK_KEY = "thumb:watermark:sync:%d";
+
+    /**
+     * 参与同步的节点心跳：ZSET，member 为节点ID，score 为最近心跳时间
+     */
+    String SYNC_NODE_KEY = "thumb:node:sync";
+
+    /**
+     * 补偿任务的 SCAN 游标：HASH，field 为节点（主机名:端口），value 为 前缀序号:游标
+     */
+    String COMPENSATE_CURSOR_KEY = "thumb:compensate:cursor";
+
+    /**
+     * 博客点赞数校对进度：值为已校对到的博客ID
+     */
+    String RECONCILE_CURSOR_KEY = "thumb:reconcile:cursor";
+
+    /**
+     * 博客详情缓存：HASH，field 为缩写的字段名
+     */
+    String BLOG_DETAIL_KEY_PREFIX = "blog:detail:";
+
+    /**
+     * 博客详情在热 key 探测器中的键前缀，与点赞写入（纯数字的 blogId）区分
+     */
+    String BLOG_DETAIL_HOT_KEY_PREFIX = "detail:";
+
+    /**
+     * 分块中保存分块ID的 field
+     */
+    String CHUNK_ID_FIELD = "id";
+
+    /**
+     * 点赞事件流分片：thumb:stream:{shard}
+     */
+    String THUMB_STREAM_KEY = "thumb:stream:{%d}";
+
+    /**
+     * 点赞事件流消费组
+     */
+    String THUMB_STREAM_GROUP = "thumb-sync";
+
+    /**
+     * 用户点赞位图：thumb:bitmap:{userId}:{bucket}
+     */
+    String USER_THUMB_BITMAP_KEY_PREFIX = "thumb:bitmap:%d:%d";
+
+    /**
+     * 每个位图桶覆盖 2^12 = 4096 个博客ID（最多 512 字节）
+     */
+    int USER_THUMB_BITMAP_BUCKET_BITS = 12;
+
+    /**
+     * Hash 到位图的迁移完成标记，标记出现之前位图模式同时读取两种存储
+     */
+    String USER_THUMB_BITMAP_MIGRATED_KEY = "thumb:bitmap:migrated";
+
+    /**
+     * 博客实时点赞计数：thumb:count:{blogId}，值为尚未同步到数据库的点赞增量
+     */
+    String BLOG_THUMB_COUNT_KEY_PREFIX = "thumb:count:";
+
+    /**
+     * 热门博客时间桶：thumb:trending:{bucket}，成员为博客ID，分数为该时间桶内的点赞数
+     */
+    String THUMB_TRENDING_KEY_PREFIX = "thumb:trending:";
+
+    /**
+     * 博客每分钟点赞数快照：thumb:velocity:{blogId}，field 为节点，value 为该节点的环形缓冲区
+     */
+    String BLOG_THUMB_VELOCITY_KEY_PREFIX = "thumb:velocity:";
+
     Long UN_THUMB_CONSTANT = 0L;
 
+    /**
+     * 单次批量点赞的最大操作数
+     */
+    int BATCH_THUMB_MAX_SIZE = 100;
+
+    /**
+     * 发布超过该天数的博客，点赞记录以数据库为准（Redis 中没有时回查数据库）
+     */
+    int THUMB_DB_FALLBACK_DAYS = 30;
+
 }
@@ -4,14 +4,24 @@ package com.shen.thumbsups.controller;
 import com.shen.thumbsups.common.BaseResponse;
 import com.shen.thumbsups.common.ResultUtils;
 import com.shen.thumbsups.domain.Blog;
+import com.shen.thumbsups.domain.User;
+import com.shen.thumbsups.domain.dto.blog.BlogCursorQueryRequest;
+import com.shen.thumbsups.domain.dto.blog.BlogThumbVelocityRequest;
+import com.shen.thumbsups.domain.vo.BlogThumbVelocityVO;
 import com.shen.thumbsups.domain.vo.BlogVO;
+import com.shen.thumbsups.domain.vo.CursorPageVO;
+import com.shen.thumbsups.domain.vo.TrendingBlogVO;
 import com.shen.thumbsups.service.BlogService;
+import com.shen.thumbsups.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -22,16 +32,60 @@ public class BlogController {
     @Resource
     private BlogService blogService;
 
+    @Resource
+    private UserService userService;
+
     @GetMapping("/get")
     public BaseResponse<BlogVO> get(@RequestParam("blogId") long blogId, HttpServletRequest request) {
         BlogVO blogVO = blogService.getBlogVOById(blogId, request);
         return ResultUtils.success(blogVO);
     }
 
+    /**
+     * 全部博客（含内容）
+     *
+     * @deprecated 一次查询全部博客，数据量大时很慢，保留给旧客户端；分页使用 /list/cursor，导出使用 /list/stream
+     */
+    @Deprecated
     @GetMapping("/list")
     public BaseResponse<List<BlogVO>> list(HttpServletRequest request) {
         List<Blog> blogList = blogService.list();
         List<BlogVO> blogVOList = blogService.getBlogVOList(blogList, request);
         return ResultUtils.success(blogVOList);
     }
+
+    /**
+     * 博客列表，按创建时间游标分页，不返回内容
+     */
+    @GetMapping("/list/cursor")
+    public BaseResponse<CursorPageVO<BlogVO>> listByCursor(BlogCursorQueryRequest blogCursorQueryRequest, HttpServletRequest request) {
+        return ResultUtils.success(blogService.listBlogVOByCursor(blogCursorQueryRequest, request));
+    }
+
+    /**
+     * 全部博客（不含内容），以 JSON 数组流式返回，用于导出等大批量场景
+     */
+    @GetMapping("/list/stream")
+    public ResponseEntity<StreamingResponseBody> listStream(HttpServletRequest request) {
+        // 登录态在请求线程中读取，写出在异步线程中进行
+        User loginUser = userService.getLoginUser(request);
+        StreamingResponseBody body = outputStream -> blogService.writeBlogVOStream(loginUser, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * 最近一段时间内点赞最多的博客，直接返回内存中的榜单
+     */
+    @GetMapping("/trending")
+    public BaseResponse<List<TrendingBlogVO>> trending(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return ResultUtils.success(blogService.listTrendingBlogs(limit));
+    }
+
+    /**
+     * 博客每分钟点赞数，时间区间不超过最近 24 小时
+     */
+    @GetMapping("/velocity")
+    public BaseResponse<BlogThumbVelocityVO> velocity(BlogThumbVelocityRequest blogThumbVelocityRequest) {
+        return ResultUtils.success(blogService.getThumbVelocity(blogThumbVelocityRequest));
+    }
 }
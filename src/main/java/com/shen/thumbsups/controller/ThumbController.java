@@ -2,7 +2,9 @@ package com.shen.thumbsups.controller;
 
 import com.shen.thumbsups.common.BaseResponse;
 import com.shen.thumbsups.common.ResultUtils;
+import com.shen.thumbsups.domain.dto.thumb.BatchThumbRequest;
 import com.shen.thumbsups.domain.dto.thumb.DoThumbRequest;
+import com.shen.thumbsups.domain.vo.ThumbBatchResultVO;
 import com.shen.thumbsups.service.ThumbService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,6 +13,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("thumb")
 public class ThumbController {
@@ -30,4 +34,10 @@ public class ThumbController {
         Boolean undoThumb = thumbService.undoThumb(doThumbRequest, request);
         return ResultUtils.success(undoThumb);
     }
+
+    @PostMapping("/batch")
+    public BaseResponse<List<ThumbBatchResultVO>> batchThumb(@RequestBody BatchThumbRequest batchThumbRequest, HttpServletRequest request) {
+        List<ThumbBatchResultVO> results = thumbService.batchThumb(batchThumbRequest, request);
+        return ResultUtils.success(results);
+    }
 }
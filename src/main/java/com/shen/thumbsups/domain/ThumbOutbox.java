@@ -0,0 +1,51 @@
+package com.shen.thumbsups.domain;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import java.io.Serializable;
+import java.util.Date;
+import lombok.Data;
+
+/**
+ * 点赞事务发件箱，与点赞写库在同一事务中写入，提交后再投递到 Redis 和本地缓存
+ * @TableName thumb_outbox
+ */
+@TableName(value ="thumb_outbox")
+@Data
+public class ThumbOutbox implements Serializable {
+    /**
+     *
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     *
+     */
+    private Long userId;
+
+    /**
+     *
+     */
+    private Long blogId;
+
+    /**
+     * 点赞记录ID（取消点赞时为被删除的记录ID）
+     */
+    private Long thumbId;
+
+    /**
+     * 操作类型，取值见 ThumbTypeEnum（1 点赞，-1 取消点赞）
+     */
+    private Integer type;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,30 @@
+package com.shen.thumbsups.domain.dto.blog;
+
+import com.shen.thumbsups.common.PageRequest;
+import com.shen.thumbsups.constant.CommonConstant;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 博客列表游标查询：按 (createTime, id) 键集分页，sortOrder 为 ascend 时升序，否则降序（最新在前）
+ * 首页不传游标，之后传上一页返回的 nextCreateTime / nextId；current 与 sortField 不生效
+ */
+@EqualsAndHashCode(callSuper = true)
+@Data
+public class BlogCursorQueryRequest extends PageRequest {
+
+    /**
+     * 上一页最后一条的创建时间（毫秒时间戳）
+     */
+    private Long cursorCreateTime;
+
+    /**
+     * 上一页最后一条的博客ID
+     */
+    private Long cursorId;
+
+    public BlogCursorQueryRequest() {
+        // 默认最新在前（PageRequest 默认升序）
+        setSortOrder(CommonConstant.SORT_ORDER_DESC);
+    }
+}
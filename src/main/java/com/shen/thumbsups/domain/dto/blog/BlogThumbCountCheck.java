@@ -0,0 +1,27 @@
+package com.shen.thumbsups.domain.dto.blog;
+
+import lombok.Data;
+
+/**
+ * 博客点赞数校对结果
+ */
+@Data
+public class BlogThumbCountCheck {
+
+    private Long blogId;
+
+    /**
+     * blog.thumbCount
+     */
+    private Long thumbCount;
+
+    /**
+     * thumb 表中的点赞记录数
+     */
+    private Long actualCount;
+
+    /**
+     * 尚未合并的计数槽增量
+     */
+    private Long slotCount;
+}
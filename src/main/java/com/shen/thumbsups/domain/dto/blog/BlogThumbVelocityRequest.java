@@ -0,0 +1,23 @@
+package com.shen.thumbsups.domain.dto.blog;
+
+import lombok.Data;
+
+/**
+ * 博客每分钟点赞数查询，时间区间不超过保留范围（默认 24 小时）
+ * 不传结束时间时为当前时间，不传开始时间时为结束时间前 60 分钟
+ */
+@Data
+public class BlogThumbVelocityRequest {
+
+    private Long blogId;
+
+    /**
+     * 开始时间（毫秒时间戳）
+     */
+    private Long startTime;
+
+    /**
+     * 结束时间（毫秒时间戳）
+     */
+    private Long endTime;
+}
@@ -0,0 +1,25 @@
+package com.shen.thumbsups.domain.dto.thumb;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchThumbRequest {
+
+    /**
+     * 批量点赞 / 取消点赞操作，按顺序执行
+     */
+    private List<ThumbOperation> operations;
+
+    @Data
+    public static class ThumbOperation {
+
+        private Long blogId;
+
+        /**
+         * 操作类型：1 点赞，-1 取消点赞（见 ThumbTypeEnum）
+         */
+        private Integer type;
+    }
+}
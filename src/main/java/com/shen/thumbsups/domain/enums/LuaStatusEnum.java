@@ -13,6 +13,10 @@ public enum LuaStatusEnum {
 
     SUCCESS(1L),
     FAIL(-1L),
+    /**
+     * Redis 降级，已写入本地日志，恢复后回放
+     */
+    DEFERRED(0L),
     ;
 
     private final long value;
@@ -0,0 +1,20 @@
+package com.shen.thumbsups.domain.enums;
+
+
+/**
+ *
+ * 用户点赞记录存储方式枚举
+ */
+public enum ThumbMembershipStoreEnum {
+
+    /**
+     * thumb:{userId} Hash，field 为 blogId
+     */
+    HASH,
+
+    /**
+     * thumb:bitmap:{userId}:{bucket} 位图，按博客ID区间分桶
+     */
+    BITMAP,
+    ;
+}
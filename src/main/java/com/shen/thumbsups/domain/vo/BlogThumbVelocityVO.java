@@ -0,0 +1,27 @@
+package com.shen.thumbsups.domain.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BlogThumbVelocityVO {
+
+    private Long blogId;
+
+    /**
+     * 第一个分钟桶的开始时间（毫秒时间戳）
+     */
+    private Long startTime;
+
+    /**
+     * 从 startTime 开始每分钟的点赞数
+     */
+    private List<Integer> counts;
+
+    /**
+     * 区间内的点赞总数
+     */
+    private Long total;
+
+}
@@ -1,5 +1,6 @@
 package com.shen.thumbsups.domain.vo;
 
+import com.shen.thumbsups.domain.Blog;
 import lombok.Data;
 
 import java.util.Date;
@@ -39,5 +40,25 @@ public class BlogVO {
      */
     private Boolean hasThumb;
 
+    /**
+     * 对象转包装类（手写字段复制，列表接口逐条调用，避免反射拷贝）
+     *
+     * @param blog 博客
+     * @return 不含点赞状态的博客视图
+     */
+    public static BlogVO objToVo(Blog blog) {
+        if (blog == null) {
+            return null;
+        }
+        BlogVO blogVO = new BlogVO();
+        blogVO.setId(blog.getId());
+        blogVO.setTitle(blog.getTitle());
+        blogVO.setCoverImg(blog.getCoverImg());
+        blogVO.setContent(blog.getContent());
+        blogVO.setThumbCount(blog.getThumbCount());
+        blogVO.setCreateTime(blog.getCreateTime());
+        return blogVO;
+    }
+
 }
 
@@ -0,0 +1,30 @@
+package com.shen.thumbsups.domain.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果
+ */
+@Data
+public class CursorPageVO<T> {
+
+    private List<T> records;
+
+    /**
+     * 下一页的游标：本页最后一条的创建时间（毫秒时间戳），没有下一页时为 null
+     */
+    private Long nextCreateTime;
+
+    /**
+     * 下一页的游标：本页最后一条的ID，没有下一页时为 null
+     */
+    private Long nextId;
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+
+}
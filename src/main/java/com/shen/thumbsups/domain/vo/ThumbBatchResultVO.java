@@ -0,0 +1,25 @@
+package com.shen.thumbsups.domain.vo;
+
+import lombok.Data;
+
+@Data
+public class ThumbBatchResultVO {
+
+    private Long blogId;
+
+    /**
+     * 操作类型：1 点赞，-1 取消点赞
+     */
+    private Integer type;
+
+    /**
+     * 是否执行成功
+     */
+    private Boolean success;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+
+}
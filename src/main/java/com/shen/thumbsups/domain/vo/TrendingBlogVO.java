@@ -0,0 +1,25 @@
+package com.shen.thumbsups.domain.vo;
+
+import lombok.Data;
+
+@Data
+public class TrendingBlogVO {
+
+    private Long blogId;
+
+    /**
+     * 标题
+     */
+    private String title;
+
+    /**
+     * 封面
+     */
+    private String coverImg;
+
+    /**
+     * 统计窗口内的点赞数
+     */
+    private Long windowThumbs;
+
+}
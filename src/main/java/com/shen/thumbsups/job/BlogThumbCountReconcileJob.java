@@ -0,0 +1,136 @@
+package com.shen.thumbsups.job;
+
+
+import cn.hutool.core.collection.CollUtil;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.domain.dto.blog.BlogThumbCountCheck;
+import com.shen.thumbsups.manager.BlogThumbCountUpdater;
+import com.shen.thumbsups.manager.ThumbCountManager;
+import com.shen.thumbsups.manager.ThumbDeltaAggregator;
+import com.shen.thumbsups.manager.ThumbSyncLeaseManager;
+import com.shen.thumbsups.mapper.BlogMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 博客点赞数校对
+ * blog.thumbCount 应等于 thumb 表中的点赞记录数减去尚未合并的增量（计数槽、本地聚合器），每轮校对：
+ * 1. 上一轮发现偏差的博客，偏差一致则修正，避免把校对期间的正常写入当成偏差
+ * 2. 当前的热点博客（热 key 探测器），写入最频繁、最容易产生偏差
+ * 3. 按ID顺序的下一页博客，进度保存在 Redis 中，遍历完从头开始
+ * 只在持有分片 0 同步租约的节点上运行，避免多个节点重复修正
+ */
+@Component
+@Slf4j
+public class BlogThumbCountReconcileJob {
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    @Resource
+    private BlogThumbCountUpdater blogThumbCountUpdater;
+
+    @Resource
+    private ThumbCountManager thumbCountManager;
+
+    @Resource
+    private ThumbDeltaAggregator thumbDeltaAggregator;
+
+    @Resource
+    private ThumbSyncLeaseManager thumbSyncLeaseManager;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    /**
+     * 上一轮发现的偏差：blogId -> 偏差
+     */
+    private Map<Long, Long> suspectMap = new HashMap<>();
+
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${thumb.reconcile.interval-ms:5000}")
+    public void run() {
+        if (!thumbProperties.getReconcile().isEnabled() || thumbSyncLeaseManager.fenceOf(0) == null) {
+            return;
+        }
+        try {
+            Map<Long, Long> lastSuspectMap = suspectMap;
+            suspectMap = new HashMap<>();
+            if (!lastSuspectMap.isEmpty()) {
+                confirm(lastSuspectMap, blogMapper.listThumbCountChecksByIds(lastSuspectMap.keySet()));
+            }
+            if (!thumbCountManager.getHotBlogIds().isEmpty()) {
+                collect(blogMapper.listThumbCountChecksByIds(thumbCountManager.getHotBlogIds()));
+            }
+            collect(nextPage());
+        } catch (Exception e) {
+            log.error("校对博客点赞数失败", e);
+        }
+    }
+
+    /**
+     * 从进度处读取下一页，并推进进度
+     */
+    private List<BlogThumbCountCheck> nextPage() {
+        int batchSize = thumbProperties.getReconcile().getBatchSize();
+        Object value = redisTemplate.opsForValue().get(ThumbConstant.RECONCILE_CURSOR_KEY);
+        long afterId = value == null ? 0 : Long.parseLong(value.toString());
+        List<BlogThumbCountCheck> checks = blogMapper.listThumbCountChecks(afterId, batchSize);
+        long nextAfterId = checks.size() < batchSize ? 0 : checks.get(checks.size() - 1).getBlogId();
+        redisTemplate.opsForValue().set(ThumbConstant.RECONCILE_CURSOR_KEY, nextAfterId);
+        return checks;
+    }
+
+    /**
+     * 记录偏差，下一轮确认
+     */
+    private void collect(List<BlogThumbCountCheck> checks) {
+        for (BlogThumbCountCheck check : checks) {
+            long drift = drift(check);
+            if (drift != 0) {
+                suspectMap.putIfAbsent(check.getBlogId(), drift);
+            }
+        }
+    }
+
+    /**
+     * 偏差与上一轮一致的博客修正点赞数，仍有偏差但不一致的留到下一轮
+     */
+    private void confirm(Map<Long, Long> lastSuspectMap, List<BlogThumbCountCheck> checks) {
+        Map<Long, Long> correctionMap = new HashMap<>();
+        for (BlogThumbCountCheck check : checks) {
+            long drift = drift(check);
+            if (drift == 0) {
+                continue;
+            }
+            if (lastSuspectMap.get(check.getBlogId()) == drift) {
+                correctionMap.put(check.getBlogId(), -drift);
+            } else {
+                suspectMap.put(check.getBlogId(), drift);
+            }
+        }
+        if (CollUtil.isEmpty(correctionMap)) {
+            return;
+        }
+        log.warn("修正博客点赞数偏差，博客数 = {}，偏差 = {}", correctionMap.size(), correctionMap);
+        blogThumbCountUpdater.update(correctionMap);
+    }
+
+    /**
+     * 偏差 = blog.thumbCount + 未合并增量 - 点赞记录数
+     */
+    private long drift(BlogThumbCountCheck check) {
+        long pending = check.getSlotCount() + thumbDeltaAggregator.pending(check.getBlogId());
+        return check.getThumbCount() + pending - check.getActualCount();
+    }
+}
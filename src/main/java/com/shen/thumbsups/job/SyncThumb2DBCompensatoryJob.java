@@ -1,50 +1,126 @@
 package com.shen.thumbsups.job;
 
 
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.util.ObjUtil;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.text.StrPool;
+import com.shen.thumbsups.config.ThumbProperties;
 import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.manager.ThumbSliceManager;
 import com.shen.thumbsups.util.RedisKeyUtil;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.Collection;
-import java.util.HashSet;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
  * 补偿策略
+ * 用 SCAN 游标增量遍历临时键、同步中键与分块键，把定时同步遗漏的键交给同步引擎：
+ * 1. 每轮只执行一次 SCAN（COUNT 有上限），最多交出 maxKeysPerRun 个键，不阻塞 Redis
+ * 2. 游标按节点保存在 Redis 中，重启后从中断处继续，遍历完一个前缀再遍历下一个，全部遍历完从头开始
+ * 3. 定时同步落后时本轮跳过，优先保证最新时间片的落库
  */
 @Component
 @Slf4j
 public class SyncThumb2DBCompensatoryJob {
 
+    private static final List<String> KEY_PREFIXES = List.of(
+            ThumbConstant.TEMP_THUMB_KEY_PREFIX, ThumbConstant.SYNC_THUMB_KEY_PREFIX, ThumbConstant.CHUNK_THUMB_KEY_PREFIX);
+
+    private static final String CURSOR_START = "0";
+
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
     @Resource
     private SyncThumb2DBJob syncThumb2DBJob;
 
+    @Resource
+    private ThumbSliceManager thumbSliceManager;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
 
-    @Scheduled(cron = "0 0 2 * * *")
+    /**
+     * 已扫描到、尚未交给同步引擎的临时键
+     */
+    private final Set<String> pendingKeys = new LinkedHashSet<>();
+
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${thumb.compensate.interval-ms:1000}")
     public void run() {
-        log.info("开始补偿点赞数据到数据库");
-        Set<String> thumbsKeys = redisTemplate.keys(RedisKeyUtil.getTempThumbKey("") + "*");
-        Set<String> needHandleDataSet = new HashSet<>();
-        thumbsKeys.stream().filter(ObjUtil::isNotNull).forEach(thumbsKey -> needHandleDataSet.add(
-                thumbsKey.replace(ThumbConstant.TEMP_THUMB_KEY_PREFIX.formatted(""),"")
-        ));
-
-        if (CollUtil.isEmpty(needHandleDataSet)) {
-            log.info("暂无需要补偿的数据");
+        if (syncThumb2DBJob.isCatchingUp()) {
+            return;
+        }
+        try {
+            if (pendingKeys.isEmpty()) {
+                scanStep();
+            }
+            if (pendingKeys.isEmpty()) {
+                return;
+            }
+            List<String> batch = new ArrayList<>();
+            Iterator<String> iterator = pendingKeys.iterator();
+            while (iterator.hasNext() && batch.size() < thumbProperties.getCompensate().getMaxKeysPerRun()) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            log.info("开始补偿点赞数据到数据库，键数：{}", batch.size());
+            syncThumb2DBJob.syncTempThumbKeys(batch);
+            log.info("补偿点赞数据到数据库完成");
+        } catch (Exception e) {
+            log.error("补偿点赞数据失败", e);
+        }
+    }
+
+    /**
+     * 从保存的游标继续执行一次 SCAN，把需要补偿的键加入待处理集合
+     */
+    private void scanStep() {
+        String node = NetUtil.getLocalHostName() + StrPool.COLON + serverPort;
+        Object state = redisTemplate.opsForHash().get(ThumbConstant.COMPENSATE_CURSOR_KEY, node);
+        int prefixIndex = 0;
+        String cursor = CURSOR_START;
+        if (state != null) {
+            String[] parts = state.toString().split(StrPool.COLON);
+            prefixIndex = Integer.parseInt(parts[0]) % KEY_PREFIXES.size();
+            cursor = parts[1];
+        }
+
+        String pattern = KEY_PREFIXES.get(prefixIndex).formatted("") + "*";
+        String scanCursor = cursor;
+        List<?> reply = redisTemplate.execute((RedisCallback<List<?>>) connection -> (List<?>) connection.execute("SCAN",
+                scanCursor.getBytes(StandardCharsets.UTF_8),
+                "MATCH".getBytes(StandardCharsets.UTF_8), pattern.getBytes(StandardCharsets.UTF_8),
+                "COUNT".getBytes(StandardCharsets.UTF_8), String.valueOf(thumbProperties.getCompensate().getScanCount()).getBytes(StandardCharsets.UTF_8)));
+        if (reply == null || reply.size() < 2) {
             return;
         }
-        for (String date : needHandleDataSet) {
-            syncThumb2DBJob.syncThumb2DBDate(date);
+        String nextCursor = new String((byte[]) reply.get(0), StandardCharsets.UTF_8);
+
+        // 最近的时间片由定时同步任务处理，旧格式的键全部补偿
+        long minActiveSliceId = thumbSliceManager.currentSliceId() - 2;
+        for (Object key : (List<?>) reply.get(1)) {
+            String thumbsKey = RedisKeyUtil.getTempThumbKeyOf(new String((byte[]) key, StandardCharsets.UTF_8));
+            Long sliceId = thumbSliceManager.parseSliceId(thumbsKey);
+            if (sliceId == null || sliceId < minActiveSliceId) {
+                pendingKeys.add(thumbsKey);
+            }
         }
-        log.info("补偿点赞数据到数据库完成");
+
+        // 当前前缀遍历完成后切换到下一个前缀
+        int nextPrefixIndex = CURSOR_START.equals(nextCursor) ? (prefixIndex + 1) % KEY_PREFIXES.size() : prefixIndex;
+        redisTemplate.opsForHash().put(ThumbConstant.COMPENSATE_CURSOR_KEY, node, nextPrefixIndex + StrPool.COLON + nextCursor);
     }
 }
@@ -1,25 +1,46 @@
 package com.shen.thumbsups.job;
 
 
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.date.DateTime;
+import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.text.StrPool;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import cn.hutool.core.util.IdUtil;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.RedisLuaScriptConstant;
+import com.shen.thumbsups.constant.ThumbConstant;
 import com.shen.thumbsups.domain.Thumb;
 import com.shen.thumbsups.domain.enums.ThumbTypeEnum;
-import com.shen.thumbsups.mapper.BlogMapper;
-import com.shen.thumbsups.service.ThumbService;
+import com.shen.thumbsups.manager.BlogThumbCountUpdater;
+import com.shen.thumbsups.manager.ThumbSliceManager;
+import com.shen.thumbsups.manager.ThumbSyncLeaseManager;
+import com.shen.thumbsups.mapper.ThumbMapper;
+import com.shen.thumbsups.mapper.ThumbSyncCheckpointMapper;
 import com.shen.thumbsups.util.RedisKeyUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 定时将Redis中的临时点赞数据同步到数据库中
@@ -29,66 +50,348 @@ import java.util.Map;
 public class SyncThumb2DBJob {
 
     @Resource
-    private ThumbService thumbService;
+    private ThumbMapper thumbMapper;
 
     @Resource
-    private BlogMapper blogMapper;
+    private BlogThumbCountUpdater blogThumbCountUpdater;
 
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
-    @Scheduled(initialDelay = 10000, fixedDelay = 10000)
+    @Resource
+    private ThumbSliceManager thumbSliceManager;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Resource
+    private ThumbSyncCheckpointMapper thumbSyncCheckpointMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ThumbSyncLeaseManager thumbSyncLeaseManager;
+
+    private Semaphore syncPermits;
+
+    /**
+     * 下次同步的时间，由积压情况动态调整
+     */
+    private long nextRunAt;
+
+    private long intervalMs;
+
+    /**
+     * 最近一次测得的待同步记录数
+     */
+    private final AtomicLong backlogEntries = new AtomicLong();
+
+    /**
+     * 落后的时间片数（最新已结束的时间片 - 本节点持有分片中最低的同步水位）
+     */
+    private final AtomicLong backlogSlices = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        ThumbProperties.Sync sync = thumbProperties.getSync();
+        syncPermits = new Semaphore(sync.getMaxConcurrency());
+        intervalMs = sync.getMaxIntervalMs();
+        Gauge.builder("thumb.sync.backlog.entries", backlogEntries, AtomicLong::get)
+                .description("待同步到数据库的临时点赞记录数")
+                .register(meterRegistry);
+        Gauge.builder("thumb.sync.backlog.slices", backlogSlices, AtomicLong::get)
+                .description("落后的时间片数")
+                .register(meterRegistry);
+        Gauge.builder("thumb.sync.lag.seconds", backlogSlices,
+                        slices -> slices.get() * thumbProperties.getSlice().getWindowSeconds())
+                .description("点赞落库延迟（秒）")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 自适应调度：每 100 毫秒检查一次是否到期，到期后测量积压并同步本节点持有租约的分片
+     * 1. 每个分片独立记录同步水位，从水位（含水位所在时间片，用于补上交接后迟到的写入）到最新已结束的时间片，最多 maxSlicesPerRun 个
+     * 2. 水位只推进到全部同步完成的时间片，有时间片失败时停在该时间片，下一轮重试
+     * 3. 落后或积压较多时按最短间隔连续同步，没有数据时间隔逐步翻倍退避
+     */
+    @Scheduled(initialDelay = 10000, fixedDelay = 100)
     public void run() {
-        log.info("开始同步点赞数据到数据库");
-        DateTime nowDate = DateUtil.date();
-        String date = DateUtil.format(nowDate, "HH:mm:") + (DateUtil.second(nowDate) / 10 - 1) * 10;
-        log.info("开始同步点赞数据到数据库，当前key：{}", date);
-        syncThumb2DBDate(date);
-        log.info("同步点赞数据到数据库完成");
+        long now = System.currentTimeMillis();
+        if (now < nextRunAt) {
+            return;
+        }
+        ThumbProperties.Sync sync = thumbProperties.getSync();
+        long targetSliceId = thumbSliceManager.currentSliceId() - 1;
+
+        Map<Integer, Long> watermarks = new TreeMap<>();
+        Map<Integer, Long> toSliceIds = new TreeMap<>();
+        List<String> tempThumbKeys = new ArrayList<>();
+        for (Integer shard : thumbSyncLeaseManager.ownedLeases().keySet()) {
+            long watermark = loadWatermark(shard, targetSliceId);
+            long toSliceId = Math.min(targetSliceId, watermark + sync.getMaxSlicesPerRun() - 1);
+            watermarks.put(shard, watermark);
+            toSliceIds.put(shard, toSliceId);
+            for (long sliceId = watermark; sliceId <= toSliceId; sliceId++) {
+                tempThumbKeys.add(RedisKeyUtil.getTempThumbKey(sliceId, shard));
+            }
+        }
+        Map<String, Long> sizeMap = measure(tempThumbKeys);
+        long entries = sizeMap.values().stream().mapToLong(Long::longValue).sum();
+        long minWatermark = watermarks.values().stream().mapToLong(Long::longValue).min().orElse(targetSliceId);
+        backlogEntries.set(entries);
+        backlogSlices.set(targetSliceId - minWatermark);
+
+        Set<String> failedKeys = Set.of();
+        if (!sizeMap.isEmpty()) {
+            log.info("开始同步点赞数据到数据库，分片：{}，最低水位：{}，待同步记录数：{}", watermarks.keySet(), minWatermark, entries);
+            failedKeys = syncTempThumbKeys(sizeMap.keySet());
+            log.info("同步点赞数据到数据库完成，未完成的键：{}", failedKeys);
+        }
+        for (Map.Entry<Integer, Long> entry : watermarks.entrySet()) {
+            int shard = entry.getKey();
+            long watermark = entry.getValue();
+            // 水位停在第一个未同步完成的时间片，下一轮从该时间片重试
+            long toSliceId = syncedTo(shard, watermark, toSliceIds.get(shard), failedKeys);
+            toSliceIds.put(shard, toSliceId);
+            // 同步期间失去租约的分片不推进水位，由接管的节点从原水位继续
+            if (toSliceId > watermark && thumbSyncLeaseManager.fenceOf(shard) != null) {
+                redisTemplate.opsForValue().set(ThumbConstant.SYNC_WATERMARK_KEY.formatted(shard), toSliceId);
+            }
+        }
+        long minToSliceId = toSliceIds.values().stream().mapToLong(Long::longValue).min().orElse(targetSliceId);
+        backlogSlices.set(targetSliceId - minToSliceId);
+
+        if (minToSliceId < targetSliceId || entries >= sync.getBurstEntries()) {
+            intervalMs = sync.getMinIntervalMs();
+        } else if (entries == 0) {
+            intervalMs = Math.min(intervalMs * 2, sync.getMaxIntervalMs());
+        } else {
+            intervalMs = Math.max(sync.getMinIntervalMs(),
+                    Math.min(thumbProperties.getSlice().getWindowSeconds() * 1000L, sync.getMaxIntervalMs()));
+        }
+        nextRunAt = System.currentTimeMillis() + intervalMs;
+    }
+
+    /**
+     * 定时同步是否仍落后于最新已结束的时间片，落后时补偿任务让出数据库与 Redis
+     */
+    public boolean isCatchingUp() {
+        return backlogSlices.get() > 0;
+    }
+
+    /**
+     * 本轮可推进到的水位：第一个未同步完成的时间片，全部完成时为 toSliceId
+     */
+    private long syncedTo(int shard, long watermark, long toSliceId, Set<String> failedKeys) {
+        for (long sliceId = watermark; sliceId <= toSliceId; sliceId++) {
+            if (failedKeys.contains(RedisKeyUtil.getTempThumbKey(sliceId, shard))) {
+                return sliceId;
+            }
+        }
+        return toSliceId;
+    }
+
+    /**
+     * 分片已同步到的时间片，首次运行时从上一个时间片开始
+     */
+    private long loadWatermark(int shard, long targetSliceId) {
+        Object value = redisTemplate.opsForValue().get(ThumbConstant.SYNC_WATERMARK_KEY.formatted(shard));
+        long watermark = value == null ? targetSliceId - 1 : Long.parseLong(value.toString());
+        return Math.min(watermark, targetSliceId);
+    }
+
+    /**
+     * 一次 pipeline 测量各临时键（及中断留下的同步中键）的记录数
+     *
+     * @return 有待同步数据的临时键 -> 记录数
+     */
+    private Map<String, Long> measure(List<String> tempThumbKeys) {
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        List<Object> sizes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String tempThumbKey : tempThumbKeys) {
+                connection.hashCommands().hLen(stringSerializer.serialize(tempThumbKey));
+                connection.hashCommands().hLen(stringSerializer.serialize(RedisKeyUtil.getSyncThumbKey(tempThumbKey)));
+            }
+            return null;
+        });
+        Map<String, Long> sizeMap = new LinkedHashMap<>();
+        for (int i = 0; i < tempThumbKeys.size(); i++) {
+            long size = ((Number) sizes.get(i * 2)).longValue() + ((Number) sizes.get(i * 2 + 1)).longValue();
+            if (size > 0) {
+                sizeMap.put(tempThumbKeys.get(i), size);
+            }
+        }
+        return sizeMap;
+    }
+
+    /**
+     * 并行同步引擎：
+     * 1. 每个键交接后按 blogId 拆成多个分区（同一博客只在一个分区内），中断后重新交接、分区可从中断处继续
+     * 2. 全部分区作为互不重叠的批次在虚拟线程上并行落库，信号量限制同时执行的任务数
+     * 3. 只同步本节点持有租约的分片，写库时携带租约的栅栏令牌
+     * 全部完成后返回
+     *
+     * @param tempThumbKeys 临时点赞记录键
+     * @return 未同步完成的键（未持有租约、执行失败或上一次同步未完成而未交接），由下一轮或补偿任务重试
+     */
+    public Set<String> syncTempThumbKeys(Collection<String> tempThumbKeys) {
+        Set<String> failedKeys = ConcurrentHashMap.newKeySet();
+        Map<String, Long> preparedKeys = new ConcurrentHashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String tempThumbKey : tempThumbKeys) {
+                Long fence = thumbSyncLeaseManager.fenceOf(thumbSliceManager.parseShard(tempThumbKey));
+                if (fence == null) {
+                    failedKeys.add(tempThumbKey);
+                    continue;
+                }
+                executor.submit(() -> withPermit(tempThumbKey, failedKeys, () -> {
+                    if (!prepare(tempThumbKey, fence)) {
+                        failedKeys.add(tempThumbKey);
+                    }
+                    preparedKeys.put(tempThumbKey, fence);
+                }));
+            }
+        }
+        int partitions = thumbProperties.getSync().getPartitions();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            preparedKeys.forEach((tempThumbKey, fence) -> {
+                for (int partition = 0; partition < partitions; partition++) {
+                    int currentPartition = partition;
+                    executor.submit(() -> withPermit(tempThumbKey, failedKeys, () -> drainPartition(tempThumbKey, currentPartition, fence)));
+                }
+            });
+        }
+        return failedKeys;
+    }
+
+    /**
+     * 同步一个临时点赞记录键到数据库，每条记录恰好落库一次：
+     * 1. 原子交接：临时键整体改名为同步中的键，同步期间到达的点赞进入新的临时键，不会被误删
+     * 2. 分块：每次从分区中移出一块到分块键，分块ID与写库在同一事务中记入检查点表，重试时跳过已落库的分块
+     * 3. 收尾：扣减实时计数与删除分块在同一个 Lua 脚本中完成，可重复执行
+     * 任一步骤中断后再次调用（定时任务或补偿任务）都会从中断处继续
+     *
+     * @param tempThumbKey 临时点赞记录键（时间片分片键或旧格式的 thumb:temp:HH:mm:ss）
+     */
+    public boolean syncTempThumbKey(String tempThumbKey) {
+        return syncTempThumbKeys(List.of(tempThumbKey)).isEmpty();
+    }
+
+    /**
+     * 交接临时键，并把同步中的键全部移动到各分区
+     *
+     * @return 上一次同步未完成、临时键未能交接时返回 false
+     */
+    private boolean prepare(String tempThumbKey, long fence) {
+        int partitions = thumbProperties.getSync().getPartitions();
+        List<String> keys = new ArrayList<>(partitions + 1);
+        keys.add(RedisKeyUtil.getSyncThumbKey(tempThumbKey));
+        for (int partition = 0; partition < partitions; partition++) {
+            keys.add(RedisKeyUtil.getSyncThumbKey(tempThumbKey, partition));
+        }
+        List<String> handoffKeys = new ArrayList<>(keys.size() + 1);
+        handoffKeys.add(tempThumbKey);
+        handoffKeys.addAll(keys);
+        Long handoff = redisTemplate.execute(RedisLuaScriptConstant.HANDOFF_TEMP_THUMB_SCRIPT, handoffKeys);
+        // 分区之前版本中断时留下的未分区分块
+        syncChunk(tempThumbKey, RedisKeyUtil.getChunkThumbKey(tempThumbKey), fence);
+
+        int chunkSize = thumbProperties.getSync().getChunkSize();
+        while (true) {
+            Long moved = redisTemplate.execute(RedisLuaScriptConstant.PARTITION_THUMB_SCRIPT, keys, chunkSize);
+            if (moved == null || moved <= 0) {
+                break;
+            }
+        }
+        return handoff == null || handoff >= 0;
+    }
+
+    /**
+     * 分块落库一个分区
+     */
+    private void drainPartition(String tempThumbKey, int partition, long fence) {
+        String partitionKey = RedisKeyUtil.getSyncThumbKey(tempThumbKey, partition);
+        String chunkThumbKey = RedisKeyUtil.getChunkThumbKey(tempThumbKey, partition);
+        int chunkSize = thumbProperties.getSync().getChunkSize();
+
+        // 上一次中断时未完成的分块
+        syncChunk(tempThumbKey, chunkThumbKey, fence);
+        while (true) {
+            Long taken = redisTemplate.execute(RedisLuaScriptConstant.TAKE_THUMB_CHUNK_SCRIPT,
+                    List.of(partitionKey, chunkThumbKey), chunkSize, IdUtil.getSnowflakeNextId());
+            if (taken != null && taken < 0) {
+                throw new IllegalStateException("分块未完成，无法继续同步分区：" + chunkThumbKey);
+            }
+            if (taken == null || taken == 0) {
+                break;
+            }
+            syncChunk(tempThumbKey, chunkThumbKey, fence);
+        }
+    }
+
+    /**
+     * 在信号量许可内执行任务，失败的键记入 failedKeys
+     */
+    private void withPermit(String tempThumbKey, Set<String> failedKeys, Runnable task) {
+        try {
+            syncPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedKeys.add(tempThumbKey);
+            return;
+        }
+        try {
+            task.run();
+        } catch (Exception e) {
+            failedKeys.add(tempThumbKey);
+            log.error("同步点赞数据失败，key = {}", tempThumbKey, e);
+        } finally {
+            syncPermits.release();
+        }
     }
 
     /**
-     * 同步指定日期的临时点赞数据到数据库
+     * 落库一个分块
      *
-     * @param date 需要同步的日期字符串，格式应符合业务约定（如yyyyMMdd）
-     *             Redis临时数据键会根据该日期参数生成
+     * @param tempThumbKey  分块所属的临时点赞记录键
+     * @param chunkThumbKey 分块键，userId:blogId -> 点赞变化，另含分块ID
+     * @param fence         分块所属分片的租约令牌，租约已被其他节点接管时写库回滚，分块留给新的持有者
      */
-    public void syncThumb2DBDate(String date) {
-        // 获取Redis中当日的临时点赞数据
-        String tempThumbKey = RedisKeyUtil.getTempThumbKey(date);
-        Map<Object, Object> allTempThumbMap = redisTemplate.opsForHash().entries(tempThumbKey);
-        boolean thumbMapEmpty = CollUtil.isEmpty(allTempThumbMap);
-
-        // 处理点赞数据同步逻辑
-        Map<Long, Long> blogThumbCountMap = new HashMap<>();
-        if (thumbMapEmpty) {
+    private void syncChunk(String tempThumbKey, String chunkThumbKey, long fence) {
+        Map<Object, Object> chunk = redisTemplate.opsForHash().entries(chunkThumbKey);
+        Object chunkId = chunk.remove(ThumbConstant.CHUNK_ID_FIELD);
+        if (chunkId == null) {
             return;
         }
 
-        // 构建批量插入的点赞记录和删除条件
-        ArrayList<Thumb> thumbs = new ArrayList<>();
-        LambdaQueryWrapper<Thumb> wrapper = new LambdaQueryWrapper<>();
-        boolean needRemove = false;
+        // 处理点赞数据同步逻辑，按 blogId 排序，并行批次以相同顺序锁定 blog 行，避免死锁
+        Map<Long, Long> blogThumbCountMap = new TreeMap<>();
 
-        // 遍历所有临时记录进行分类处理
-        for (Object userIdBlogIdObj : allTempThumbMap.keySet()) {
-            String userIdBlogId = (String) userIdBlogIdObj;
+        // 构建批量插入与批量删除的点赞记录
+        List<Thumb> thumbs = new ArrayList<>();
+        List<Thumb> removedThumbs = new ArrayList<>();
+
+        // 遍历临时记录进行分类处理
+        for (Map.Entry<Object, Object> entry : chunk.entrySet()) {
+            String userIdBlogId = (String) entry.getKey();
             String[] userIdBlogIdArr = userIdBlogId.split(StrPool.COLON);
             Long userId = Long.valueOf(userIdBlogIdArr[0]);
             Long blogId = Long.valueOf(userIdBlogIdArr[1]);
 
             // 解析操作类型并处理
-            Integer thumbType = Integer.valueOf(allTempThumbMap.get(userIdBlogId).toString());
+            Integer thumbType = Integer.valueOf(entry.getValue().toString());
+            Thumb thumb = new Thumb();
+            thumb.setBlogId(blogId);
+            thumb.setUserId(userId);
             if (thumbType == ThumbTypeEnum.INCR.getValue()) {
-                // 构造新增点赞实体
-                Thumb thumb = new Thumb();
-                thumb.setBlogId(blogId);
-                thumb.setUserId(userId);
                 thumbs.add(thumb);
             } else if (thumbType == ThumbTypeEnum.DECR.getValue()) {
-                // 构建删除条件（或逻辑）
-                needRemove = true;
-                wrapper.or().eq(Thumb::getUserId, userId).eq(Thumb::getBlogId, blogId);
+                removedThumbs.add(thumb);
             } else {
                 // 处理异常数据
                 if (thumbType == ThumbTypeEnum.NONE.getValue()) {
@@ -101,21 +404,43 @@ public class SyncThumb2DBJob {
             blogThumbCountMap.put(blogId, blogThumbCountMap.getOrDefault(blogId, 0L) + thumbType);
         }
 
-        // 批量持久化操作
-        thumbService.saveBatch(thumbs);
-        if (needRemove) {
-            thumbService.remove(wrapper);
-        }
-
-        // 更新博客点赞总数
-        if (!blogThumbCountMap.isEmpty()) {
-            blogMapper.batchUpdateThumbsCount(blogThumbCountMap);
-        }
+        ThumbProperties.Sync sync = thumbProperties.getSync();
+        int shard = thumbSliceManager.parseShard(tempThumbKey);
+        transactionTemplate.executeWithoutResult(status -> {
+            thumbSyncLeaseManager.checkFence(shard, fence);
+            if (thumbSyncCheckpointMapper.insertIgnore(Long.parseLong(chunkId.toString()), tempThumbKey) == 0) {
+                log.info("分块已落库，跳过写库，chunkId = {}", chunkId);
+                return;
+            }
+            // 多行 INSERT 与按 (userId, blogId) 的 DELETE，分批执行控制单条语句大小
+            for (List<Thumb> batch : ListUtil.partition(thumbs, sync.getInsertBatchSize())) {
+                thumbMapper.insertBatchOnDuplicate(batch);
+            }
+            for (List<Thumb> batch : ListUtil.partition(removedThumbs, sync.getDeleteBatchSize())) {
+                thumbMapper.deleteBatchByUserIdAndBlogId(batch);
+            }
+            // 更新博客点赞总数，按 blogId 分块，与点赞记录同一事务提交
+            blogThumbCountUpdater.update(blogThumbCountMap);
+        });
 
-        // 异步清理Redis临时数据
-        Thread.startVirtualThread(() -> {
-            redisTemplate.delete(tempThumbKey);
+        // 扣减已写库的实时计数并删除分块
+        List<String> keys = new ArrayList<>(blogThumbCountMap.size() + 1);
+        List<Object> deltas = new ArrayList<>(blogThumbCountMap.size());
+        keys.add(chunkThumbKey);
+        blogThumbCountMap.forEach((blogId, delta) -> {
+            keys.add(RedisKeyUtil.getBlogThumbCountKey(blogId));
+            deltas.add(delta);
         });
+        redisTemplate.execute(RedisLuaScriptConstant.FINISH_THUMB_CHUNK_SCRIPT, keys, deltas.toArray());
+    }
+
+    /**
+     * 清理一天前的分块落库记录，重试只会发生在分块落库后的短时间内
+     */
+    @Scheduled(cron = "0 30 * * * *")
+    public void cleanCheckpoints() {
+        int deleted = thumbSyncCheckpointMapper.deleteBefore(DateUtil.offsetDay(new Date(), -1));
+        log.info("清理分块落库记录：{}", deleted);
     }
 
 }
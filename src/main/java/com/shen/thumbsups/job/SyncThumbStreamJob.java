@@ -0,0 +1,369 @@
+package com.shen.thumbsups.job;
+
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.exceptions.ExceptionUtil;
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.RuntimeUtil;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.RedisLuaScriptConstant;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.domain.enums.ThumbTypeEnum;
+import com.shen.thumbsups.manager.BlogThumbCountUpdater;
+import com.shen.thumbsups.manager.ThumbSyncLeaseManager;
+import com.shen.thumbsups.mapper.ThumbMapper;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 点赞事件流消费者：把 thumb:stream:{shard} 中的点赞事件同步到数据库（thumb.stream.enabled 开启）
+ * 1. 分片 shard 只由持有同步租约 shard % thumb.slice.shards 的节点消费，节点内每个分片固定由一个虚拟线程处理，
+ *    整个集群同一时刻每个分片只有一个消费者，同一用户的事件按顺序落库
+ * 2. 同一批内按 (userId, blogId) 只保留最后一个事件，以 insert ignore / delete 幂等写入，博客点赞数按实际影响行数更新；
+ *    事务内校验租约，租约已转移的旧持有者无法写入
+ * 3. 事务提交后以一个脚本 XACK、删除事件并扣减实时点赞计数，只有本次确认成功的事件才扣减，重复投递不会重复扣减
+ * 4. 取得分片租约时先认领其他消费者的全部待确认事件，处理完再读取新事件；之后仍残留的长时间未确认事件由定时任务认领
+ * 5. 消费者名称含进程号，每次重启都会在消费组中新增消费者；定时任务认领后删除没有待确认事件且长时间空闲的旧消费者
+ */
+@Component
+@Slf4j
+public class SyncThumbStreamJob implements CommandLineRunner {
+
+    private static final String FIELD_USER_ID = "userId";
+
+    private static final String FIELD_BLOG_ID = "blogId";
+
+    private static final String FIELD_TYPE = "type";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ThumbMapper thumbMapper;
+
+    @Resource
+    private BlogThumbCountUpdater blogThumbCountUpdater;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private ThumbSyncLeaseManager thumbSyncLeaseManager;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    private final String nodeName = NetUtil.getLocalHostName() + ":" + RuntimeUtil.getPid();
+
+    /**
+     * 需要先处理本消费者待确认事件的分片（启动、认领、处理失败后）
+     */
+    private final Set<Integer> pendingShards = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 本节点正在消费的分片 -> 取得分片时的租约令牌
+     */
+    private final Map<Integer, Long> shardFences = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    @Override
+    public void run(String... args) {
+        ThumbProperties.Stream stream = thumbProperties.getStream();
+        if (!stream.isEnabled() || !stream.isConsume()) {
+            return;
+        }
+        for (int shard = 0; shard < stream.getShards(); shard++) {
+            createGroup(RedisKeyUtil.getThumbStreamKey(shard));
+            pendingShards.add(shard);
+        }
+        running = true;
+        int consumers = Math.min(stream.getConsumers(), stream.getShards());
+        for (int index = 0; index < consumers; index++) {
+            List<Integer> shards = new ArrayList<>();
+            for (int shard = index; shard < stream.getShards(); shard += consumers) {
+                shards.add(shard);
+            }
+            int consumerIndex = index;
+            Thread.ofVirtual().name("thumb-stream-consumer-" + index).start(() -> consumeLoop(consumerIndex, shards));
+        }
+        log.info("点赞事件流消费者已启动，节点 = {}，消费者数 = {}", nodeName, consumers);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+    }
+
+    private void consumeLoop(int consumerIndex, List<Integer> shards) {
+        ThumbProperties.Stream stream = thumbProperties.getStream();
+        Consumer consumer = Consumer.from(ThumbConstant.THUMB_STREAM_GROUP, consumerName(consumerIndex));
+        // 只负责一个分片时可以阻塞读取，负责多个分片时轮询，全部为空再等待
+        boolean blocking = shards.size() == 1;
+        while (running) {
+            int consumed = 0;
+            int owned = 0;
+            for (Integer shard : shards) {
+                try {
+                    Long fence = acquire(consumer, shard);
+                    if (fence == null) {
+                        continue;
+                    }
+                    owned++;
+                    consumed += consume(consumer, shard, fence, blocking);
+                } catch (Exception e) {
+                    log.error("消费点赞事件失败，shard = {}", shard, e);
+                    pendingShards.add(shard);
+                    ThreadUtil.sleep(stream.getPollIntervalMs());
+                }
+            }
+            if (consumed == 0 && (!blocking || owned == 0)) {
+                ThreadUtil.sleep(stream.getPollIntervalMs());
+            }
+        }
+    }
+
+    /**
+     * 检查本节点是否持有分片的租约，新取得时先认领该分片其他消费者的全部待确认事件
+     *
+     * @return 租约令牌，未持有时为 null
+     */
+    private Long acquire(Consumer consumer, int shard) {
+        Long fence = thumbSyncLeaseManager.fenceOf(leaseShardOf(shard));
+        if (fence == null) {
+            shardFences.remove(shard);
+            return null;
+        }
+        if (!fence.equals(shardFences.get(shard))) {
+            // 旧持有者的写入会被租约校验拒绝，不必等待空闲时间
+            int claimed = claimPending(RedisKeyUtil.getThumbStreamKey(shard), consumer.getName(), Duration.ZERO);
+            pendingShards.add(shard);
+            shardFences.put(shard, fence);
+            log.info("取得点赞事件流分片，shard = {}，fence = {}，认领待确认事件 = {}", shard, fence, claimed);
+        }
+        return fence;
+    }
+
+    /**
+     * 读取并处理分片的一批事件：有待确认事件时先重新处理待确认事件，否则读取新事件
+     *
+     * @return 处理的事件数
+     */
+    private int consume(Consumer consumer, int shard, long fence, boolean blocking) {
+        ThumbProperties.Stream stream = thumbProperties.getStream();
+        String streamKey = RedisKeyUtil.getThumbStreamKey(shard);
+        StreamOperations<String, String, String> streamOperations = stringRedisTemplate.opsForStream();
+        StreamReadOptions options = StreamReadOptions.empty().count(stream.getBatchSize());
+
+        boolean pending = pendingShards.contains(shard);
+        ReadOffset readOffset = pending ? ReadOffset.from("0") : ReadOffset.lastConsumed();
+        if (!pending && blocking) {
+            options = options.block(Duration.ofMillis(stream.getPollIntervalMs()));
+        }
+        // StreamOperations 只提供可变参数的 read，单个 StreamOffset 的泛型数组不会被读取方写入，可以安全忽略
+        @SuppressWarnings("unchecked")
+        List<MapRecord<String, String, String>> records = streamOperations.read(consumer, options, StreamOffset.create(streamKey, readOffset));
+        if (CollUtil.isEmpty(records)) {
+            if (pending) {
+                pendingShards.remove(shard);
+            }
+            return 0;
+        }
+        apply(shard, fence, streamKey, records);
+        return records.size();
+    }
+
+    /**
+     * 在一个事务中写入一批事件，提交后确认并删除事件，同时扣减已计入实时点赞计数的增量
+     */
+    private void apply(int shard, long fence, String streamKey, List<MapRecord<String, String, String>> records) {
+        // userId:blogId -> 最后一个事件类型，决定该点赞记录的最终状态
+        Map<String, ThumbEvent> lastEventMap = new LinkedHashMap<>();
+        // 确认脚本参数：每个事件一个计数键，以及 (事件ID, 增量)
+        List<String> ackKeys = new ArrayList<>(records.size() + 1);
+        List<String> ackArgs = new ArrayList<>(records.size() * 2 + 1);
+        ackKeys.add(streamKey);
+        ackArgs.add(ThumbConstant.THUMB_STREAM_GROUP);
+        for (MapRecord<String, String, String> record : records) {
+            ThumbEvent event = parse(record.getValue());
+            ackArgs.add(record.getId().getValue());
+            if (event == null) {
+                log.warn("点赞事件数据异常，丢弃: {} {}", record.getId(), record.getValue());
+                ackKeys.add(streamKey);
+                ackArgs.add("0");
+                continue;
+            }
+            lastEventMap.put(event.userId + ":" + event.blogId, event);
+            ackKeys.add(RedisKeyUtil.getBlogThumbCountKey(event.blogId));
+            ackArgs.add(String.valueOf(event.type));
+        }
+
+        Map<Long, List<Long>> thumbUserMap = new HashMap<>();
+        Map<Long, List<Long>> unthumbUserMap = new HashMap<>();
+        for (ThumbEvent event : lastEventMap.values()) {
+            Map<Long, List<Long>> userMap = event.type == ThumbTypeEnum.INCR.getValue() ? thumbUserMap : unthumbUserMap;
+            userMap.computeIfAbsent(event.blogId, id -> new ArrayList<>()).add(event.userId);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            thumbSyncLeaseManager.checkFence(leaseShardOf(shard), fence);
+            // 按 blogId 排序，各消费者以相同顺序锁定 blog 行
+            Map<Long, Long> countMap = new TreeMap<>();
+            thumbUserMap.forEach((blogId, userIds) ->
+                    countMap.merge(blogId, (long) thumbMapper.insertIgnoreBatch(blogId, userIds), Long::sum));
+            unthumbUserMap.forEach((blogId, userIds) ->
+                    countMap.merge(blogId, (long) -thumbMapper.deleteByBlogIdAndUserIds(blogId, userIds), Long::sum));
+            blogThumbCountUpdater.update(countMap);
+        });
+
+        // 事务已提交：确认并删除事件，事件流只保留尚未落库的事件；确认与扣减在同一脚本中，不会只做一半
+        stringRedisTemplate.execute(RedisLuaScriptConstant.ACK_THUMB_EVENTS_SCRIPT, ackKeys, ackArgs.toArray());
+    }
+
+    /**
+     * 认领其他消费者（宕机节点、已下线的消费者）长时间未确认的事件，交给本节点该分片的消费者重新处理，
+     * 随后删除已没有待确认事件的旧消费者，XINFO CONSUMERS 不会随重启次数增长
+     */
+    @Scheduled(initialDelayString = "${thumb.stream.claim-idle-ms:30000}", fixedDelayString = "${thumb.stream.claim-idle-ms:30000}")
+    public void reclaim() {
+        if (!running) {
+            return;
+        }
+        ThumbProperties.Stream stream = thumbProperties.getStream();
+        Duration minIdle = Duration.ofMillis(stream.getClaimIdleMs());
+        int consumers = Math.min(stream.getConsumers(), stream.getShards());
+        for (Integer shard : shardFences.keySet()) {
+            try {
+                String streamKey = RedisKeyUtil.getThumbStreamKey(shard);
+                String owner = consumerName(shard % consumers);
+                int claimed = claimPending(streamKey, owner, minIdle);
+                if (claimed > 0) {
+                    pendingShards.add(shard);
+                    log.info("认领未确认的点赞事件，shard = {}，数量 = {}", shard, claimed);
+                }
+                Long deleted = stringRedisTemplate.execute(RedisLuaScriptConstant.DELETE_IDLE_CONSUMERS_SCRIPT, List.of(streamKey),
+                        ThumbConstant.THUMB_STREAM_GROUP, owner, String.valueOf(stream.getClaimIdleMs()));
+                if (deleted != null && deleted > 0) {
+                    log.info("删除已下线的点赞事件消费者，shard = {}，数量 = {}", shard, deleted);
+                }
+            } catch (Exception e) {
+                log.error("认领点赞事件失败，shard = {}", shard, e);
+            }
+        }
+    }
+
+    /**
+     * 把分片中其他消费者空闲超过 minIdle 的待确认事件认领给 owner
+     *
+     * @return 认领的事件数
+     */
+    private int claimPending(String streamKey, String owner, Duration minIdle) {
+        ThumbProperties.Stream stream = thumbProperties.getStream();
+        StreamOperations<String, String, String> streamOperations = stringRedisTemplate.opsForStream();
+        int claimed = 0;
+        Range<String> range = Range.unbounded();
+        while (true) {
+            PendingMessages pendingMessages = streamOperations.pending(streamKey, ThumbConstant.THUMB_STREAM_GROUP,
+                    range, stream.getBatchSize());
+            if (pendingMessages.isEmpty()) {
+                return claimed;
+            }
+            List<RecordId> idleIds = new ArrayList<>();
+            for (PendingMessage pendingMessage : pendingMessages) {
+                if (!owner.equals(pendingMessage.getConsumerName())
+                        && pendingMessage.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                    idleIds.add(pendingMessage.getId());
+                }
+            }
+            if (!idleIds.isEmpty()) {
+                streamOperations.claim(streamKey, ThumbConstant.THUMB_STREAM_GROUP, owner, minIdle, idleIds.toArray(new RecordId[0]));
+                claimed += idleIds.size();
+            }
+            if (pendingMessages.size() < stream.getBatchSize()) {
+                return claimed;
+            }
+            String lastId = pendingMessages.get(pendingMessages.size() - 1).getIdAsString();
+            range = Range.of(Range.Bound.exclusive(lastId), Range.Bound.unbounded());
+        }
+    }
+
+    /**
+     * 创建消费组（事件流不存在时一并创建），消费组已存在时忽略
+     */
+    private void createGroup(String streamKey) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> createGroup(connection, streamKey));
+        } catch (Exception e) {
+            if (!ExceptionUtil.getRootCauseMessage(e).contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    private String createGroup(RedisConnection connection, String streamKey) {
+        byte[] rawKey = stringRedisTemplate.getStringSerializer().serialize(streamKey);
+        return connection.streamCommands().xGroupCreate(rawKey, ThumbConstant.THUMB_STREAM_GROUP, ReadOffset.from("0"), true);
+    }
+
+    /**
+     * 事件流分片对应的同步租约分片
+     */
+    private int leaseShardOf(int shard) {
+        return shard % thumbProperties.getSlice().getShards();
+    }
+
+    private String consumerName(int consumerIndex) {
+        return nodeName + "-" + consumerIndex;
+    }
+
+    private ThumbEvent parse(Map<String, String> value) {
+        if (value == null) {
+            return null;
+        }
+        String userId = value.get(FIELD_USER_ID);
+        String blogId = value.get(FIELD_BLOG_ID);
+        String type = value.get(FIELD_TYPE);
+        if (!NumberUtil.isLong(userId) || !NumberUtil.isLong(blogId) || !NumberUtil.isInteger(type)) {
+            return null;
+        }
+        int thumbType = Integer.parseInt(type);
+        if (thumbType != ThumbTypeEnum.INCR.getValue() && thumbType != ThumbTypeEnum.DECR.getValue()) {
+            return null;
+        }
+        return new ThumbEvent(Long.parseLong(userId), Long.parseLong(blogId), thumbType);
+    }
+
+    private record ThumbEvent(long userId, long blogId, int type) {
+    }
+}
@@ -0,0 +1,278 @@
+package com.shen.thumbsups.job;
+
+
+import cn.hutool.core.util.RandomUtil;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.RedisLuaScriptConstant;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.manager.ThumbMembershipManager;
+import com.shen.thumbsups.manager.ThumbSyncLeaseManager;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 用户点赞记录迁移：thumb:{userId} Hash -> thumb:bitmap:{userId}:{bucket} 位图
+ * 通过 thumb.membership.migrate-on-startup 开启，迁移完成后输出抽样用户的内存与查询耗时对比
+ * 1. 只在位图模式下迁移，所有节点切换到位图模式后再开启；由持有 0 号分片同步租约的节点执行，启动时未持有租约则定期重试
+ * 2. 迁移期间写入不停：位图模式在完成标记出现前同时读取 Hash，取消点赞同时删除 Hash 中的记录，逐条迁移时 Hash 中已没有的记录不置位
+ * 3. 全部用户迁移后设置完成标记，之后才删除原 Hash；租约中途被接管时放弃本轮，由新的持有者重新迁移（迁移可重复执行）
+ */
+@Component
+@Slf4j
+public class ThumbMembershipMigrationJob implements CommandLineRunner {
+
+    private static final Pattern USER_THUMB_KEY_PATTERN = Pattern.compile("^thumb:(\\d+)$");
+
+    private static final int SCAN_COUNT = 500;
+
+    /**
+     * 每次 pipeline 写入的位数
+     */
+    private static final int PIPELINE_SIZE = 1000;
+
+    /**
+     * 参与内存与耗时对比的抽样用户数
+     */
+    private static final int SAMPLE_USERS = 100;
+
+    /**
+     * 每个抽样用户的查询次数
+     */
+    private static final int LATENCY_ROUNDS = 20;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Resource
+    private ThumbMembershipManager thumbMembershipManager;
+
+    @Resource
+    private ThumbSyncLeaseManager thumbSyncLeaseManager;
+
+    private final ReentrantLock migrateLock = new ReentrantLock();
+
+    /**
+     * 本节点已确认迁移完成
+     */
+    private volatile boolean done;
+
+    @Override
+    public void run(String... args) {
+        migrateIfNeeded();
+    }
+
+    /**
+     * 启动时未持有租约或迁移被中断时，由之后持有租约的节点继续
+     */
+    @Scheduled(initialDelay = 60, fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+    public void migrateIfNeeded() {
+        if (done || !thumbProperties.getMembership().isMigrateOnStartup()) {
+            return;
+        }
+        if (!thumbMembershipManager.isBitmap()) {
+            log.warn("点赞记录存储方式不是位图，跳过迁移");
+            done = true;
+            return;
+        }
+        if (!thumbMembershipManager.isReadingHash()) {
+            done = true;
+            return;
+        }
+        Long fence = thumbSyncLeaseManager.fenceOf(0);
+        if (fence == null || !migrateLock.tryLock()) {
+            return;
+        }
+        try {
+            done = migrate(fence);
+        } finally {
+            migrateLock.unlock();
+        }
+    }
+
+    /**
+     * @param fence 0 号分片的租约令牌，迁移过程中令牌变化（租约被接管）时放弃本轮
+     * @return 是否迁移完成
+     */
+    public boolean migrate(Long fence) {
+        log.info("开始迁移用户点赞记录到位图");
+        long userCount = 0;
+        long thumbCount = 0;
+        List<Sample> samples = new ArrayList<>();
+        try (Cursor<String> cursor = scanUserThumbKeys()) {
+            while (cursor.hasNext()) {
+                String hashKey = cursor.next();
+                Matcher matcher = USER_THUMB_KEY_PATTERN.matcher(hashKey);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                if (!Objects.equals(thumbSyncLeaseManager.fenceOf(0), fence)) {
+                    log.warn("0 号分片的同步租约已转移，放弃本轮迁移，已迁移用户数 = {}", userCount);
+                    return false;
+                }
+                long userId = Long.parseLong(matcher.group(1));
+                boolean sampled = samples.size() < SAMPLE_USERS;
+                long hashBytes = sampled ? memoryUsage(hashKey) : 0;
+
+                Sample sample = new Sample(userId, hashKey, hashBytes);
+                thumbCount += migrateUser(userId, hashKey, sample);
+                userCount++;
+                if (sampled && !sample.blogIds.isEmpty()) {
+                    samples.add(sample);
+                }
+            }
+        }
+        thumbMembershipManager.markMigrated();
+        log.info("点赞记录迁移完成，用户数 = {}，点赞数 = {}", userCount, thumbCount);
+        report(samples);
+        if (thumbProperties.getMembership().isDeleteHashAfterMigrate()) {
+            deleteHashes();
+        }
+        return true;
+    }
+
+    /**
+     * 完成标记设置后删除原 Hash：此后位图已包含全部记录，仍在查询间隔内读取 Hash 的节点查不到记录也不影响结果
+     */
+    private void deleteHashes() {
+        long deleted = 0;
+        try (Cursor<String> cursor = scanUserThumbKeys()) {
+            while (cursor.hasNext()) {
+                String hashKey = cursor.next();
+                if (USER_THUMB_KEY_PATTERN.matcher(hashKey).matches()) {
+                    redisTemplate.delete(hashKey);
+                    deleted++;
+                }
+            }
+        }
+        log.info("已删除迁移前的用户点赞 Hash，数量 = {}", deleted);
+    }
+
+    private Cursor<String> scanUserThumbKeys() {
+        ScanOptions options = ScanOptions.scanOptions().match(ThumbConstant.USER_THUMB_KEY_PREFIX + "*").count(SCAN_COUNT).build();
+        return redisTemplate.scan(options);
+    }
+
+    /**
+     * 分批 HSCAN 用户的 Hash，pipeline 写入位图
+     */
+    private long migrateUser(long userId, String hashKey, Sample sample) {
+        long migrated = 0;
+        List<Long> buffer = new ArrayList<>(PIPELINE_SIZE);
+        ScanOptions options = ScanOptions.scanOptions().count(PIPELINE_SIZE).build();
+        try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash().scan(hashKey, options)) {
+            while (cursor.hasNext()) {
+                buffer.add(Long.valueOf(cursor.next().getKey().toString()));
+                if (buffer.size() >= PIPELINE_SIZE) {
+                    migrated += setBits(userId, buffer, sample);
+                    buffer.clear();
+                }
+            }
+        }
+        migrated += setBits(userId, buffer, sample);
+        return migrated;
+    }
+
+    private int setBits(long userId, List<Long> blogIds, Sample sample) {
+        if (blogIds.isEmpty()) {
+            return 0;
+        }
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        byte[] script = stringSerializer.serialize(RedisLuaScriptConstant.MIGRATE_THUMB_BITMAP_SCRIPT.getScriptAsString());
+        byte[] hashKey = stringSerializer.serialize(RedisKeyUtil.getUserThumbKey(userId));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long blogId : blogIds) {
+                String bitmapKey = RedisKeyUtil.getUserThumbBitmapKey(userId, blogId);
+                // 逐条校验 Hash 中仍有该记录，迁移期间已取消的点赞不写回位图
+                connection.scriptingCommands().eval(script, ReturnType.INTEGER, 2, hashKey,
+                        stringSerializer.serialize(bitmapKey), stringSerializer.serialize(blogId.toString()),
+                        stringSerializer.serialize(String.valueOf(RedisKeyUtil.getUserThumbBitmapOffset(blogId))));
+                sample.bitmapKeys.add(bitmapKey);
+            }
+            return null;
+        });
+        if (sample.blogIds.size() < LATENCY_ROUNDS) {
+            sample.blogIds.addAll(blogIds.subList(0, Math.min(blogIds.size(), LATENCY_ROUNDS - sample.blogIds.size())));
+        }
+        return blogIds.size();
+    }
+
+    /**
+     * 输出抽样用户 Hash 与位图的内存占用和单次查询耗时（在删除原 Hash 之前执行）
+     */
+    private void report(List<Sample> samples) {
+        if (samples.isEmpty()) {
+            return;
+        }
+        long hashBytes = 0;
+        long bitmapBytes = 0;
+        long hashNanos = 0;
+        long bitmapNanos = 0;
+        long rounds = 0;
+        for (Sample sample : samples) {
+            hashBytes += sample.hashBytes;
+            for (String bitmapKey : sample.bitmapKeys) {
+                bitmapBytes += memoryUsage(bitmapKey);
+            }
+            for (int i = 0; i < LATENCY_ROUNDS; i++) {
+                Long blogId = RandomUtil.randomEle(sample.blogIds);
+                long hashStart = System.nanoTime();
+                redisTemplate.opsForHash().hasKey(sample.hashKey, blogId.toString());
+                hashNanos += System.nanoTime() - hashStart;
+                long start = System.nanoTime();
+                redisTemplate.opsForValue().getBit(RedisKeyUtil.getUserThumbBitmapKey(sample.userId, blogId),
+                        RedisKeyUtil.getUserThumbBitmapOffset(blogId));
+                bitmapNanos += System.nanoTime() - start;
+                rounds++;
+            }
+        }
+        log.info("抽样 {} 个用户：Hash 内存 {} 字节，位图内存 {} 字节", samples.size(), hashBytes, bitmapBytes);
+        log.info("单次查询平均耗时：HEXISTS {} 微秒，GETBIT {} 微秒", hashNanos / rounds / 1000.0, bitmapNanos / rounds / 1000.0);
+    }
+
+    private long memoryUsage(String key) {
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        Long usage = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            Object result = connection.execute("MEMORY", stringSerializer.serialize("USAGE"), stringSerializer.serialize(key));
+            return result instanceof Number number ? number.longValue() : 0L;
+        });
+        return usage == null ? 0 : usage;
+    }
+
+    private static class Sample {
+        final long userId;
+        final String hashKey;
+        final long hashBytes;
+        final Set<String> bitmapKeys = new HashSet<>();
+        final List<Long> blogIds = new ArrayList<>();
+
+        Sample(long userId, String hashKey, long hashBytes) {
+            this.userId = userId;
+            this.hashKey = hashKey;
+            this.hashBytes = hashBytes;
+        }
+    }
+}
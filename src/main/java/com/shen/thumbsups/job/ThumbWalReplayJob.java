@@ -0,0 +1,86 @@
+package com.shen.thumbsups.job;
+
+
+import com.shen.thumbsups.domain.enums.LuaStatusEnum;
+import com.shen.thumbsups.domain.enums.ThumbTypeEnum;
+import com.shen.thumbsups.manager.RedisCircuitBreaker;
+import com.shen.thumbsups.manager.ThumbMembershipManager;
+import com.shen.thumbsups.manager.ThumbSliceManager;
+import com.shen.thumbsups.manager.ThumbWriteAheadLog;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Redis 恢复后回放点赞本地日志
+ * 断路器断开一段时间后探测 Redis，恢复则按顺序把日志中的事件交给点赞 Lua 脚本执行，回放完成后闭合断路器。
+ * 每次脚本调用经断路器限时执行，Redis 再次变慢或不可用时本轮回放中止，不阻塞任务线程。
+ * 脚本按用户点赞记录去重：降级期间写入日志时没有做重复检查，重复的点赞、未点赞的取消在回放时被脚本拒绝并丢弃；
+ * 重复回放（例如回放中途失败后重试）也不会重复计数
+ */
+@Component
+@Slf4j
+public class ThumbWalReplayJob {
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private ThumbWriteAheadLog thumbWriteAheadLog;
+
+    @Resource
+    private ThumbMembershipManager thumbMembershipManager;
+
+    @Resource
+    private ThumbSliceManager thumbSliceManager;
+
+    @Scheduled(initialDelay = 1000, fixedDelay = 1000)
+    public void run() {
+        if (!redisCircuitBreaker.isProbeDue()) {
+            return;
+        }
+        boolean recovered = redisCircuitBreaker.probe(() -> redisTemplate.execute((RedisCallback<String>) connection -> connection.ping()));
+        if (!recovered) {
+            return;
+        }
+        log.info("Redis 已恢复，开始回放点赞本地日志");
+        try {
+            long replayed = thumbWriteAheadLog.replay(this::apply);
+            log.info("点赞本地日志回放完成，事件数 = {}", replayed);
+        } catch (Exception e) {
+            log.error("点赞本地日志回放失败，等待下次探测", e);
+            redisCircuitBreaker.trip("本地日志回放失败");
+        }
+    }
+
+    private void apply(List<ThumbWriteAheadLog.Entry> entries) {
+        int rejected = 0;
+        for (ThumbWriteAheadLog.Entry entry : entries) {
+            boolean thumb = entry.type() == ThumbTypeEnum.INCR.getValue();
+            // 断路器此时处于断开状态，调用失败或超时走降级处理：抛出异常中止本轮回放，下次从段头记录的位置继续
+            Long result = redisCircuitBreaker.execute(
+                    () -> redisTemplate.execute(
+                            thumbMembershipManager.script(thumb),
+                            thumbMembershipManager.scriptKeys(thumbSliceManager.currentBufferKey(entry.userId()), entry.userId(), entry.blogId()),
+                            thumbMembershipManager.scriptArgs(entry.userId(), entry.blogId(), true)),
+                    () -> {
+                        throw new IllegalStateException("回放点赞本地日志时 Redis 调用失败");
+                    }
+            );
+            if (result != null && result == LuaStatusEnum.FAIL.getValue()) {
+                rejected++;
+            }
+        }
+        if (rejected > 0) {
+            log.info("回放点赞本地日志，丢弃重复的点赞或取消点赞，事件数 = {}", rejected);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.collection.CollUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.domain.Blog;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 博客详情两级缓存
+ * 1. 本地缓存（Caffeine）：只缓存热 key 探测器判定的热点博客，不含点赞数，过期时间短
+ * 2. Redis 缓存：blog:detail:{blogId} 哈希，字段名缩写、时间存毫秒时间戳；点赞数（n）随写库增量同步更新
+ * 博客内容变更时调用 evict 失效两级缓存
+ */
+@Component
+@Slf4j
+public class BlogDetailCacheManager {
+
+    private static final String FIELD_USER_ID = "u";
+    private static final String FIELD_TITLE = "t";
+    private static final String FIELD_COVER_IMG = "i";
+    private static final String FIELD_CONTENT = "c";
+    public static final String FIELD_THUMB_COUNT = "n";
+    private static final String FIELD_CREATE_TIME = "ct";
+    private static final String FIELD_UPDATE_TIME = "ut";
+
+    /**
+     * 缓存存在时才累加点赞数，不存在时由下次读取从数据库加载
+     */
+    private static final byte[] INCR_IF_EXISTS_SCRIPT = """
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                return redis.call('HINCRBY', KEYS[1], 'n', ARGV[1])
+            end
+            return 0
+            """.getBytes(StandardCharsets.UTF_8);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private TopK hotKeyDetector;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    private Cache<Long, Blog> localCache;
+
+    @PostConstruct
+    public void init() {
+        ThumbProperties.DetailCache detailCache = thumbProperties.getDetailCache();
+        localCache = Caffeine.newBuilder()
+                .maximumSize(detailCache.getLocalMaxSize())
+                .expireAfterWrite(detailCache.getLocalTtlSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 本地缓存中的博客（点赞数需另行从 Redis 读取）
+     */
+    public Blog getLocal(long blogId) {
+        return localCache.getIfPresent(blogId);
+    }
+
+    /**
+     * 记录一次详情访问，热点博客放入本地缓存
+     */
+    public void admit(Blog blog) {
+        AddResult addResult = hotKeyDetector.add(ThumbConstant.BLOG_DETAIL_HOT_KEY_PREFIX + blog.getId(), 1);
+        if (addResult.isHotKey()) {
+            localCache.put(blog.getId(), blog);
+        }
+    }
+
+    /**
+     * 写入 Redis 缓存
+     */
+    public void put(Blog blog) {
+        String key = RedisKeyUtil.getBlogDetailKey(blog.getId());
+        Map<String, String> hash = encode(blog);
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] rawKey = stringSerializer.serialize(key);
+            Map<byte[], byte[]> rawHash = new HashMap<>();
+            hash.forEach((field, value) -> rawHash.put(stringSerializer.serialize(field), stringSerializer.serialize(value)));
+            connection.hashCommands().hMSet(rawKey, rawHash);
+            connection.keyCommands().expire(rawKey, thumbProperties.getDetailCache().getRedisTtlSeconds());
+            return null;
+        });
+    }
+
+    /**
+     * 失效两级缓存
+     */
+    public void evict(long blogId) {
+        localCache.invalidate(blogId);
+        stringRedisTemplate.delete(RedisKeyUtil.getBlogDetailKey(blogId));
+    }
+
+    /**
+     * blog.thumbCount 写库后同步累加缓存中的点赞数
+     * 处于事务中时登记到提交之后执行，事务回滚（调用方随后重试）不会重复累加；不在事务中时立即执行
+     *
+     * @param deltaMap blogId -> 点赞变化量
+     */
+    public void incrThumbCount(Map<Long, Long> deltaMap) {
+        if (CollUtil.isEmpty(deltaMap)) {
+            return;
+        }
+        Map<Long, Long> snapshot = new HashMap<>(deltaMap);
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            doIncrThumbCount(snapshot);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                doIncrThumbCount(snapshot);
+            }
+        });
+    }
+
+    private void doIncrThumbCount(Map<Long, Long> deltaMap) {
+        try {
+            RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                deltaMap.forEach((blogId, delta) -> connection.scriptingCommands().eval(INCR_IF_EXISTS_SCRIPT,
+                        ReturnType.INTEGER, 1,
+                        stringSerializer.serialize(RedisKeyUtil.getBlogDetailKey(blogId)),
+                        stringSerializer.serialize(String.valueOf(delta))));
+                return null;
+            });
+        } catch (Exception e) {
+            // 更新失败时删除缓存，下次读取从数据库加载
+            log.warn("更新博客详情缓存点赞数失败，失效缓存，博客数 = {}", deltaMap.size(), e);
+            stringRedisTemplate.delete(deltaMap.keySet().stream().map(RedisKeyUtil::getBlogDetailKey).toList());
+        }
+    }
+
+    private Map<String, String> encode(Blog blog) {
+        Map<String, String> hash = new HashMap<>();
+        putIfNotNull(hash, FIELD_USER_ID, blog.getUserId());
+        putIfNotNull(hash, FIELD_TITLE, blog.getTitle());
+        putIfNotNull(hash, FIELD_COVER_IMG, blog.getCoverImg());
+        putIfNotNull(hash, FIELD_CONTENT, blog.getContent());
+        putIfNotNull(hash, FIELD_THUMB_COUNT, blog.getThumbCount());
+        putIfNotNull(hash, FIELD_CREATE_TIME, blog.getCreateTime() == null ? null : blog.getCreateTime().getTime());
+        putIfNotNull(hash, FIELD_UPDATE_TIME, blog.getUpdateTime() == null ? null : blog.getUpdateTime().getTime());
+        return hash;
+    }
+
+    /**
+     * 从 Redis 哈希还原博客，缓存不存在时返回 null
+     */
+    public Blog decode(long blogId, Map<?, ?> hash) {
+        if (CollUtil.isEmpty(hash)) {
+            return null;
+        }
+        Blog blog = new Blog();
+        blog.setId(blogId);
+        blog.setUserId(toLong(hash.get(FIELD_USER_ID)));
+        blog.setTitle((String) hash.get(FIELD_TITLE));
+        blog.setCoverImg((String) hash.get(FIELD_COVER_IMG));
+        blog.setContent((String) hash.get(FIELD_CONTENT));
+        Long thumbCount = toLong(hash.get(FIELD_THUMB_COUNT));
+        blog.setThumbCount(thumbCount == null ? null : thumbCount.intValue());
+        Long createTime = toLong(hash.get(FIELD_CREATE_TIME));
+        blog.setCreateTime(createTime == null ? null : new Date(createTime));
+        Long updateTime = toLong(hash.get(FIELD_UPDATE_TIME));
+        blog.setUpdateTime(updateTime == null ? null : new Date(updateTime));
+        return blog;
+    }
+
+    private static void putIfNotNull(Map<String, String> hash, String field, Object value) {
+        if (value != null) {
+            hash.put(field, value.toString());
+        }
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : Long.valueOf(value.toString());
+    }
+}
@@ -0,0 +1,95 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.collection.ListUtil;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.mapper.BlogMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 博客点赞总数（blog.thumbCount）批量更新
+ * 1. 按 blogId 升序拆成固定大小的分块，每块一条 CASE 语句，所有调用方以相同顺序锁定 blog 行，避免死锁
+ * 2. 已处于事务中时各分块加入该事务（与点赞记录、检查点一起提交）；否则每个分块单独提交，行锁只持有一个分块的时间
+ * 3. 记录每个分块的耗时（thumb.count.update.chunk）
+ */
+@Component
+@Slf4j
+public class BlogThumbCountUpdater {
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private BlogDetailCacheManager blogDetailCacheManager;
+
+    private Timer inTransactionTimer;
+
+    private Timer standaloneTimer;
+
+    @PostConstruct
+    public void init() {
+        inTransactionTimer = chunkTimer("joined");
+        standaloneTimer = chunkTimer("standalone");
+    }
+
+    /**
+     * 分块更新博客点赞总数
+     * 不在事务中时，已提交分块的博客会从 countMap 中移除，调用方在失败后只需重试剩余部分
+     *
+     * @param countMap 博客ID -> 点赞变化量（可修改的 Map）
+     */
+    public void update(Map<Long, Long> countMap) {
+        List<Long> blogIds = new ArrayList<>(new TreeMap<>(countMap).keySet());
+        boolean inTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        for (List<Long> chunkIds : ListUtil.partition(blogIds, thumbProperties.getSync().getCountBatchSize())) {
+            Map<Long, Long> chunk = new LinkedHashMap<>();
+            for (Long blogId : chunkIds) {
+                Long delta = countMap.get(blogId);
+                if (delta != null && delta != 0) {
+                    chunk.put(blogId, delta);
+                }
+            }
+            if (chunk.isEmpty()) {
+                continue;
+            }
+            if (inTransaction) {
+                inTransactionTimer.record(() -> blogMapper.batchUpdateThumbsCount(chunk));
+            } else {
+                standaloneTimer.record(() -> transactionTemplate.executeWithoutResult(status -> blogMapper.batchUpdateThumbsCount(chunk)));
+                countMap.keySet().removeAll(chunkIds);
+            }
+            // 详情缓存中的点赞数在所在事务提交后累加，回滚时不累加
+            blogDetailCacheManager.incrThumbCount(chunk);
+        }
+    }
+
+    private Timer chunkTimer(String mode) {
+        return Timer.builder("thumb.count.update.chunk")
+                .description("博客点赞总数分块更新耗时")
+                .tag("mode", mode)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+}
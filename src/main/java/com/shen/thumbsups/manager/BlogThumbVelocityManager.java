@@ -0,0 +1,212 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.text.StrPool;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.domain.vo.BlogThumbVelocityVO;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 博客每分钟点赞数（最近 retentionMinutes 分钟）
+ * 1. 点赞成功时记入本节点该博客的环形缓冲区（ThumbMinuteRing），写入路径不访问 Redis
+ * 2. 定时把有新点赞的缓冲区快照到 thumb:velocity:{blogId} 哈希中本节点的字段（稀疏二进制），
+ *    节点重启后第一次快照前先合并本节点之前的快照；空闲的缓冲区快照后从内存移除
+ * 3. 查询时一次 HGETALL 合并所有节点的快照，本节点以内存中的缓冲区为准，不查询数据库
+ */
+@Component
+@Slf4j
+public class BlogThumbVelocityManager {
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    /**
+     * blogId -> 每分钟点赞数
+     */
+    private final Map<Long, ThumbMinuteRing> rings = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时校验保留分钟数，避免配置错误到第一次点赞时才暴露
+     */
+    @PostConstruct
+    public void init() {
+        int retentionMinutes = thumbProperties.getVelocity().getRetentionMinutes();
+        if (retentionMinutes <= 0 || retentionMinutes > ThumbMinuteRing.MAX_SIZE) {
+            throw new IllegalStateException("thumb.velocity.retention-minutes 必须在 1 到 " + ThumbMinuteRing.MAX_SIZE + " 之间：" + retentionMinutes);
+        }
+    }
+
+    /**
+     * 记录一次点赞
+     */
+    public void record(Long blogId) {
+        long minute = currentMinute();
+        // compute 与快照时的移除互斥，避免写入已被移除的缓冲区
+        rings.compute(blogId, (id, ring) -> {
+            if (ring == null) {
+                ring = new ThumbMinuteRing(thumbProperties.getVelocity().getRetentionMinutes(), minute);
+            }
+            ring.add(minute, 1);
+            return ring;
+        });
+    }
+
+    /**
+     * 查询 [fromMinute, toMinute] 内每分钟的点赞数
+     *
+     * @param blogId     博客ID
+     * @param fromMinute 起始分钟（epoch 分钟，含）
+     * @param toMinute   结束分钟（epoch 分钟，含）
+     */
+    public BlogThumbVelocityVO query(long blogId, long fromMinute, long toMinute) {
+        int size = thumbProperties.getVelocity().getRetentionMinutes();
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        Map<byte[], byte[]> snapshots = stringRedisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                connection.hashCommands().hGetAll(stringSerializer.serialize(RedisKeyUtil.getBlogThumbVelocityKey(blogId))));
+
+        ThumbMinuteRing merged = new ThumbMinuteRing(size, currentMinute());
+        ThumbMinuteRing local = rings.get(blogId);
+        byte[] nodeField = stringSerializer.serialize(nodeId());
+        if (snapshots != null) {
+            snapshots.forEach((field, value) -> {
+                // 已合并之前快照的本地缓冲区包含本节点的全部数据
+                if (local != null && local.isRestored() && Arrays.equals(field, nodeField)) {
+                    return;
+                }
+                merged.merge(ThumbMinuteRing.decode(value, size));
+            });
+        }
+        if (local != null) {
+            merged.merge(local);
+        }
+
+        List<Integer> counts = new ArrayList<>((int) (toMinute - fromMinute + 1));
+        long total = 0;
+        for (long minute = fromMinute; minute <= toMinute; minute++) {
+            int count = merged.count(minute);
+            counts.add(count);
+            total += count;
+        }
+        BlogThumbVelocityVO velocityVO = new BlogThumbVelocityVO();
+        velocityVO.setBlogId(blogId);
+        velocityVO.setStartTime(TimeUnit.MINUTES.toMillis(fromMinute));
+        velocityVO.setCounts(counts);
+        velocityVO.setTotal(total);
+        return velocityVO;
+    }
+
+    /**
+     * 快照有新点赞的缓冲区，并移除空闲的缓冲区
+     */
+    @Scheduled(initialDelayString = "${thumb.velocity.snapshot-seconds:30}", fixedDelayString = "${thumb.velocity.snapshot-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void snapshot() {
+        try {
+            List<Map.Entry<Long, ThumbMinuteRing>> dirtyRings = rings.entrySet().stream()
+                    .filter(entry -> entry.getValue().isDirty())
+                    .toList();
+            if (!dirtyRings.isEmpty()) {
+                restore(dirtyRings);
+                write(dirtyRings);
+            }
+            evictIdle();
+        } catch (Exception e) {
+            log.error("快照博客每分钟点赞数失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        snapshot();
+    }
+
+    /**
+     * 新建的缓冲区第一次快照前合并本节点之前的快照，避免覆盖
+     */
+    private void restore(List<Map.Entry<Long, ThumbMinuteRing>> dirtyRings) {
+        List<Map.Entry<Long, ThumbMinuteRing>> unrestored = dirtyRings.stream()
+                .filter(entry -> !entry.getValue().isRestored())
+                .toList();
+        if (unrestored.isEmpty()) {
+            return;
+        }
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        byte[] nodeField = stringSerializer.serialize(nodeId());
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<Long, ThumbMinuteRing> entry : unrestored) {
+                connection.hashCommands().hGet(stringSerializer.serialize(RedisKeyUtil.getBlogThumbVelocityKey(entry.getKey())), nodeField);
+            }
+            return null;
+        }, RedisSerializer.byteArray());
+        int size = thumbProperties.getVelocity().getRetentionMinutes();
+        for (int i = 0; i < unrestored.size(); i++) {
+            ThumbMinuteRing ring = unrestored.get(i).getValue();
+            if (results.get(i) instanceof byte[] previous) {
+                ring.merge(ThumbMinuteRing.decode(previous, size));
+            }
+            ring.markRestored();
+        }
+    }
+
+    private void write(List<Map.Entry<Long, ThumbMinuteRing>> dirtyRings) {
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        byte[] nodeField = stringSerializer.serialize(nodeId());
+        long ttlSeconds = TimeUnit.MINUTES.toSeconds(thumbProperties.getVelocity().getRetentionMinutes());
+        try {
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Map.Entry<Long, ThumbMinuteRing> entry : dirtyRings) {
+                    byte[] rawKey = stringSerializer.serialize(RedisKeyUtil.getBlogThumbVelocityKey(entry.getKey()));
+                    connection.hashCommands().hSet(rawKey, nodeField, entry.getValue().encode());
+                    connection.keyCommands().expire(rawKey, ttlSeconds);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // 写入失败时下一轮重新快照
+            dirtyRings.forEach(entry -> entry.getValue().markDirty());
+            throw e;
+        }
+    }
+
+    /**
+     * 快照后空闲超过 localIdleMinutes 的缓冲区从内存移除，之后的点赞新建缓冲区并在快照前合并
+     */
+    private void evictIdle() {
+        long idleBefore = currentMinute() - thumbProperties.getVelocity().getLocalIdleMinutes();
+        for (Long blogId : rings.keySet()) {
+            rings.computeIfPresent(blogId, (id, ring) ->
+                    ring.isDirty() || ring.getHeadMinute() >= idleBefore ? ring : null);
+        }
+    }
+
+    private String nodeId() {
+        return NetUtil.getLocalHostName() + StrPool.COLON + serverPort;
+    }
+
+    public static long currentMinute() {
+        return TimeUnit.MILLISECONDS.toMinutes(System.currentTimeMillis());
+    }
+}
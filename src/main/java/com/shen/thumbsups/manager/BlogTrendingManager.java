@@ -0,0 +1,275 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.collection.CollUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.domain.Blog;
+import com.shen.thumbsups.domain.vo.TrendingBlogVO;
+import com.shen.thumbsups.mapper.BlogMapper;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 热门博客（最近 windowMinutes 分钟内点赞最多）
+ * 1. 点赞成功时记入本节点当前时间桶的 HeavyKeeper，只保留 TopK，内存与点赞量无关；
+ *    取消点赞按博客计数（只与时间桶内被取消点赞的博客数有关），合并时从点赞数中扣除，反复点赞 / 取消不会抬高排名
+ * 2. 时间桶结束后先关闭该桶并等待正在写入的线程完成，再把 TopK 的净点赞数以 ZINCRBY 合并到 thumb:trending:{bucket}，
+ *    多个节点写入同一个 ZSET；
+ *    ZSET 只保留分数最高的 zsetMaxSize 个成员，窗口结束后自动过期
+ * 3. 定时读取窗口内的时间桶（一次 pipeline）合并出榜单并补全标题，接口直接返回内存中的榜单
+ * 榜单最多落后一个时间桶加一个刷新间隔
+ */
+@Component
+@Slf4j
+public class BlogTrendingManager {
+
+    private static final int SKETCH_DEPTH = 5;
+
+    private static final double SKETCH_DECAY = 0.92;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    /**
+     * 当前时间桶
+     */
+    private volatile Window current;
+
+    /**
+     * 内存中的榜单，按窗口内点赞数降序
+     */
+    private volatile List<TrendingBlogVO> trending = List.of();
+
+    /**
+     * 时间桶及其本地 TopK
+     */
+    private static class Window {
+
+        final long bucket;
+
+        final TopK topK;
+
+        /**
+         * blogId -> 时间桶内的取消点赞数
+         */
+        final Map<Long, LongAdder> undoCounts = new ConcurrentHashMap<>();
+
+        /**
+         * 正在写入的线程数
+         */
+        final AtomicInteger writers = new AtomicInteger();
+
+        /**
+         * 已切换到新的时间桶，不再接受写入
+         */
+        volatile boolean closed;
+
+        Window(long bucket, TopK topK) {
+            this.bucket = bucket;
+            this.topK = topK;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        current = newWindow(currentBucket());
+    }
+
+    /**
+     * 记录一次点赞
+     */
+    public void record(Long blogId) {
+        write(window -> window.topK.add(blogId.toString(), 1));
+    }
+
+    /**
+     * 记录一次取消点赞
+     */
+    public void recordUndo(Long blogId) {
+        write(window -> window.undoCounts.computeIfAbsent(blogId, id -> new LongAdder()).increment());
+    }
+
+    /**
+     * 写入当前时间桶：先登记再检查是否已关闭，与 rollover 先关闭再等待登记数归零配合，
+     * 写入要么在合并前完成，要么重试到新的时间桶
+     */
+    private void write(Consumer<Window> action) {
+        while (true) {
+            Window window = current;
+            window.writers.incrementAndGet();
+            try {
+                if (!window.closed) {
+                    action.accept(window);
+                    return;
+                }
+            } finally {
+                window.writers.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 内存中的榜单
+     *
+     * @param limit 返回条数
+     */
+    public List<TrendingBlogVO> list(int limit) {
+        List<TrendingBlogVO> snapshot = trending;
+        return snapshot.size() <= limit ? snapshot : snapshot.subList(0, limit);
+    }
+
+    /**
+     * 进入新的时间桶时切换本地 TopK，并把上一个时间桶合并到 Redis
+     */
+    @Scheduled(initialDelay = 1, fixedDelay = 1, timeUnit = TimeUnit.SECONDS)
+    public void rollover() {
+        long bucket = currentBucket();
+        Window window = current;
+        if (window.bucket >= bucket) {
+            return;
+        }
+        current = newWindow(bucket);
+        window.closed = true;
+        // 等待切换前读到旧时间桶的写入完成
+        while (window.writers.get() > 0) {
+            Thread.onSpinWait();
+        }
+        try {
+            flush(window);
+        } catch (Exception e) {
+            log.error("合并热门博客时间桶失败，bucket = {}", window.bucket, e);
+        }
+    }
+
+    private void flush(Window window) {
+        Map<String, Long> netCounts = new HashMap<>();
+        for (Item item : window.topK.list()) {
+            LongAdder undoCount = window.undoCounts.get(Long.valueOf(item.key()));
+            long net = item.count() - (undoCount == null ? 0 : undoCount.sum());
+            if (net > 0) {
+                netCounts.put(item.key(), net);
+            }
+        }
+        if (netCounts.isEmpty()) {
+            return;
+        }
+        ThumbProperties.Trending trendingProperties = thumbProperties.getTrending();
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] rawKey = stringSerializer.serialize(RedisKeyUtil.getTrendingKey(window.bucket));
+            netCounts.forEach((key, net) -> connection.zSetCommands().zIncrBy(rawKey, net, stringSerializer.serialize(key)));
+            // 只保留分数最高的 zsetMaxSize 个成员
+            connection.zSetCommands().zRemRange(rawKey, 0, -trendingProperties.getZsetMaxSize() - 1L);
+            connection.keyCommands().expire(rawKey, trendingProperties.getWindowMinutes() * 60L + trendingProperties.getBucketSeconds());
+            return null;
+        });
+    }
+
+    /**
+     * 合并窗口内已结束的时间桶，刷新内存中的榜单
+     */
+    @Scheduled(initialDelay = 1000, fixedDelayString = "${thumb.trending.refresh-ms:5000}")
+    public void refresh() {
+        try {
+            ThumbProperties.Trending trendingProperties = thumbProperties.getTrending();
+            long lastBucket = currentBucket() - 1;
+            long bucketCount = trendingProperties.getWindowMinutes() * 60L / trendingProperties.getBucketSeconds();
+            RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (long bucket = lastBucket - bucketCount + 1; bucket <= lastBucket; bucket++) {
+                    connection.zSetCommands().zRevRangeWithScores(
+                            stringSerializer.serialize(RedisKeyUtil.getTrendingKey(bucket)), 0, trendingProperties.getTopK() - 1);
+                }
+                return null;
+            });
+
+            Map<Long, Long> thumbsMap = new HashMap<>();
+            for (Object result : results) {
+                if (!(result instanceof Collection<?> tuples)) {
+                    continue;
+                }
+                for (Object tuple : tuples) {
+                    ZSetOperations.TypedTuple<?> typedTuple = (ZSetOperations.TypedTuple<?>) tuple;
+                    if (typedTuple.getValue() == null || typedTuple.getScore() == null) {
+                        continue;
+                    }
+                    thumbsMap.merge(Long.valueOf(typedTuple.getValue().toString()), typedTuple.getScore().longValue(), Long::sum);
+                }
+            }
+            List<Map.Entry<Long, Long>> topEntries = thumbsMap.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                    .limit(trendingProperties.getTopK())
+                    .toList();
+            trending = buildTrending(topEntries);
+        } catch (Exception e) {
+            log.error("刷新热门博客失败", e);
+        }
+    }
+
+    /**
+     * 补全标题与封面，已删除的博客不进入榜单
+     */
+    private List<TrendingBlogVO> buildTrending(List<Map.Entry<Long, Long>> topEntries) {
+        if (CollUtil.isEmpty(topEntries)) {
+            return List.of();
+        }
+        List<Long> blogIds = topEntries.stream().map(Map.Entry::getKey).toList();
+        Map<Long, Blog> blogMap = blogMapper.selectList(new LambdaQueryWrapper<Blog>()
+                        .select(Blog::getId, Blog::getTitle, Blog::getCoverImg)
+                        .in(Blog::getId, blogIds))
+                .stream()
+                .collect(Collectors.toMap(Blog::getId, Function.identity()));
+        List<TrendingBlogVO> result = new ArrayList<>(topEntries.size());
+        for (Map.Entry<Long, Long> entry : topEntries) {
+            Blog blog = blogMap.get(entry.getKey());
+            if (blog == null) {
+                continue;
+            }
+            TrendingBlogVO trendingBlogVO = new TrendingBlogVO();
+            trendingBlogVO.setBlogId(blog.getId());
+            trendingBlogVO.setTitle(blog.getTitle());
+            trendingBlogVO.setCoverImg(blog.getCoverImg());
+            trendingBlogVO.setWindowThumbs(entry.getValue());
+            result.add(trendingBlogVO);
+        }
+        return List.copyOf(result);
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / (thumbProperties.getTrending().getBucketSeconds() * 1000L);
+    }
+
+    private Window newWindow(long bucket) {
+        ThumbProperties.Trending trendingProperties = thumbProperties.getTrending();
+        return new Window(bucket, new HeavyKeeper(trendingProperties.getTopK(), trendingProperties.getSketchWidth(),
+                SKETCH_DEPTH, SKETCH_DECAY, 1));
+    }
+}
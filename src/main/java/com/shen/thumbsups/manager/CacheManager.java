@@ -10,6 +10,11 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -85,6 +90,36 @@ public class CacheManager {
         return redisValue;
     }
 
+    /**
+     * 批量获取：先查本地缓存，未命中的 key 一次 HMGET
+     * 列表页一次查询大量 key，不计入热 key 探测器，也不写入本地缓存，避免列表浏览抬高所有 key 的访问计数
+     *
+     * @return key -> 值（不存在的 key 不在结果中）
+     */
+    public Map<String, Object> getAll(String hashKey, Collection<String> keys) {
+        Map<String, Object> result = new HashMap<>();
+        List<String> missKeys = new ArrayList<>();
+        for (String key : keys) {
+            Object value = localCache.getIfPresent(buildCacheKey(hashKey, key));
+            if (value != null) {
+                result.put(key, value);
+            } else {
+                missKeys.add(key);
+            }
+        }
+        if (missKeys.isEmpty()) {
+            return result;
+        }
+        List<Object> redisValues = redisTemplate.opsForHash().multiGet(hashKey, new ArrayList<>(missKeys));
+        for (int i = 0; i < missKeys.size(); i++) {
+            Object redisValue = redisValues.get(i);
+            if (redisValue != null) {
+                result.put(missKeys.get(i), redisValue);
+            }
+        }
+        return result;
+    }
+
     public void putIfPresent(String hashKey, String key, Object value) {
         String compositeKey = buildCacheKey(hashKey, key);
         Object object = localCache.getIfPresent(compositeKey);
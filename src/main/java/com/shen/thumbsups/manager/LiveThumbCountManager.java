@@ -0,0 +1,283 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.text.StrPool;
+import cn.hutool.core.util.NumberUtil;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 博客实时点赞计数
+ * thumb:count:{blogId} 记录已写入 Redis 但尚未同步到数据库的点赞增量，由点赞 Lua 脚本（或热点博客的本地聚合器）累加，
+ * 同步任务写库后扣减。展示时 点赞数 = blog.thumbCount + 增量，无需等待同步任务
+ */
+@Component
+@Slf4j
+public class LiveThumbCountManager {
+
+    private static final int SCAN_COUNT = 500;
+
+    /**
+     * 值为 0 时删除计数键，避免空计数长期占用内存
+     */
+    private static final RedisScript<Long> DELETE_IF_ZERO_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == '0' then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ThumbDeltaAggregator thumbDeltaAggregator;
+
+    @Resource
+    private ThumbCountManager thumbCountManager;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Resource
+    private ThumbSyncLeaseManager thumbSyncLeaseManager;
+
+    /**
+     * 上一轮校对发现的偏差，连续两轮偏差一致才修正，避免把校对期间的正常写入当成偏差
+     */
+    private Map<Long, Long> lastDriftMap = new HashMap<>();
+
+    /**
+     * 批量获取尚未同步到数据库的点赞增量，一次 pipeline
+     *
+     * @param blogIds 博客ID
+     * @return        blogId -> 增量（没有增量的博客不在结果中）
+     */
+    public Map<Long, Long> getPending(Collection<Long> blogIds) {
+        Map<Long, Long> pendingMap = new HashMap<>();
+        if (CollUtil.isEmpty(blogIds)) {
+            return pendingMap;
+        }
+        List<Long> blogIdList = new ArrayList<>(blogIds);
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long blogId : blogIdList) {
+                connection.stringCommands().get(stringSerializer.serialize(RedisKeyUtil.getBlogThumbCountKey(blogId)));
+            }
+            return null;
+        }, stringSerializer);
+        for (int i = 0; i < blogIdList.size(); i++) {
+            Long blogId = blogIdList.get(i);
+            long pending = toPending(blogId, values.get(i));
+            if (pending != 0) {
+                pendingMap.put(blogId, pending);
+            }
+        }
+        return pendingMap;
+    }
+
+    /**
+     * 由调用方 pipeline 中读取的实时计数得到尚未同步的增量（含本地聚合器中尚未写入 Redis 的部分）
+     *
+     * @param blogId 博客ID
+     * @param value  GET thumb:count:{blogId} 的结果
+     */
+    public long toPending(long blogId, Object value) {
+        long pending = value == null ? 0 : Long.parseLong(value.toString());
+        return pending + thumbDeltaAggregator.pendingLive(blogId);
+    }
+
+    /**
+     * 同步任务写库成功后扣减已同步的增量
+     *
+     * @param syncedMap blogId -> 已写入数据库的增量
+     */
+    public void decrement(Map<Long, Long> syncedMap) {
+        if (CollUtil.isEmpty(syncedMap)) {
+            return;
+        }
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            syncedMap.forEach((blogId, delta) -> connection.stringCommands()
+                    .decrBy(stringSerializer.serialize(RedisKeyUtil.getBlogThumbCountKey(blogId)), delta));
+            return null;
+        });
+    }
+
+    /**
+     * 校对实时计数：实时计数加上本节点聚合器中尚未写入 Redis 的增量，应等于尚未同步的临时点赞记录之和
+     * 扣减失败、节点宕机等原因产生的偏差在连续两轮一致时修正，并清理值为 0 的计数键
+     * 1. 一次 SCAN 找出计数键与临时点赞记录键，先用 HLEN / XLEN 统计待同步的记录数，
+     *    超过 thumb.reconcile.live-max-records 时跳过本轮：积压期间同步任务落后，偏差无法与正常的延迟区分，也不应再增加 Redis 负载
+     * 2. 开启本地聚合时跳过热点博客，其他节点聚合器中尚未写入的增量在本节点不可见，热度下降后再校对
+     * 只在持有分片 0 同步租约的节点上运行，避免多个节点重复修正同一偏差
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 60000)
+    public void reconcile() {
+        if (thumbSyncLeaseManager.fenceOf(0) == null) {
+            // 租约转移后由新的持有者重新观察两轮
+            lastDriftMap = new HashMap<>();
+            return;
+        }
+        List<String> countKeys = new ArrayList<>();
+        List<String> tempThumbKeys = new ArrayList<>();
+        scanKeys(countKeys, tempThumbKeys);
+        List<String> streamKeys = new ArrayList<>();
+        for (int shard = 0; shard < thumbProperties.getStream().getShards(); shard++) {
+            streamKeys.add(RedisKeyUtil.getThumbStreamKey(shard));
+        }
+        long unsyncedRecords = countUnsyncedRecords(tempThumbKeys, streamKeys);
+        if (unsyncedRecords > thumbProperties.getReconcile().getLiveMaxRecords()) {
+            log.info("待同步的点赞记录过多，跳过本轮实时计数校对，记录数 = {}", unsyncedRecords);
+            lastDriftMap = new HashMap<>();
+            return;
+        }
+        Map<Long, Long> expectedMap = new HashMap<>();
+        tempThumbKeys.forEach(tempThumbKey -> sumTempThumbs(tempThumbKey, expectedMap));
+        streamKeys.forEach(streamKey -> sumUnsyncedEvents(streamKey, expectedMap));
+
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            countKeys.forEach(countKey -> connection.stringCommands().get(stringSerializer.serialize(countKey)));
+            return null;
+        }, stringSerializer);
+        boolean aggregated = thumbDeltaAggregator.isEnabled();
+        Map<Long, Long> driftMap = new HashMap<>();
+        List<String> zeroKeys = new ArrayList<>();
+        for (int i = 0; i < countKeys.size(); i++) {
+            String countKey = countKeys.get(i);
+            Long blogId = Long.valueOf(countKey.substring(ThumbConstant.BLOG_THUMB_COUNT_KEY_PREFIX.length()));
+            Object value = values.get(i);
+            if (value == null || aggregated && thumbCountManager.isHot(blogId)) {
+                continue;
+            }
+            long actual = Long.parseLong(value.toString());
+            long drift = toPending(blogId, value) - expectedMap.getOrDefault(blogId, 0L);
+            if (drift != 0) {
+                driftMap.put(blogId, drift);
+            } else if (actual == 0) {
+                zeroKeys.add(countKey);
+            }
+        }
+
+        Map<Long, Long> confirmedMap = new HashMap<>();
+        driftMap.forEach((blogId, drift) -> {
+            if (drift.equals(lastDriftMap.get(blogId))) {
+                confirmedMap.put(blogId, drift);
+            }
+        });
+        lastDriftMap = driftMap;
+        if (!confirmedMap.isEmpty()) {
+            log.warn("修正博客实时点赞计数偏差，博客数 = {}", confirmedMap.size());
+            decrement(confirmedMap);
+            confirmedMap.keySet().forEach(lastDriftMap::remove);
+        }
+        for (String zeroKey : zeroKeys) {
+            redisTemplate.execute(DELETE_IF_ZERO_SCRIPT, List.of(zeroKey));
+        }
+    }
+
+    /**
+     * 一次遍历键空间，找出实时计数键与尚未同步的临时点赞记录键（含同步中的键与分块）
+     */
+    private void scanKeys(List<String> countKeys, List<String> tempThumbKeys) {
+        List<String> tempThumbPrefixes = List.of(ThumbConstant.TEMP_THUMB_KEY_PREFIX.formatted(""),
+                ThumbConstant.SYNC_THUMB_KEY_PREFIX.formatted(""), ThumbConstant.CHUNK_THUMB_KEY_PREFIX.formatted(""));
+        ScanOptions options = ScanOptions.scanOptions().match(ThumbConstant.USER_THUMB_KEY_PREFIX + "*").count(SCAN_COUNT).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                if (key.startsWith(ThumbConstant.BLOG_THUMB_COUNT_KEY_PREFIX)) {
+                    if (NumberUtil.isLong(key.substring(ThumbConstant.BLOG_THUMB_COUNT_KEY_PREFIX.length()))) {
+                        countKeys.add(key);
+                    }
+                } else if (tempThumbPrefixes.stream().anyMatch(key::startsWith)) {
+                    tempThumbKeys.add(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 待同步的临时点赞记录数与事件数，一次 pipeline
+     */
+    private long countUnsyncedRecords(List<String> tempThumbKeys, List<String> streamKeys) {
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        List<Object> sizes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            tempThumbKeys.forEach(key -> connection.hashCommands().hLen(stringSerializer.serialize(key)));
+            streamKeys.forEach(key -> connection.streamCommands().xLen(stringSerializer.serialize(key)));
+            return null;
+        }, stringSerializer);
+        return sizes.stream().filter(Long.class::isInstance).mapToLong(Long.class::cast).sum();
+    }
+
+    private void sumTempThumbs(String tempThumbKey, Map<Long, Long> expectedMap) {
+        ScanOptions fieldOptions = ScanOptions.scanOptions().count(SCAN_COUNT).build();
+        try (Cursor<Map.Entry<Object, Object>> cursor = redisTemplate.opsForHash().scan(tempThumbKey, fieldOptions)) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                String[] userIdBlogId = entry.getKey().toString().split(StrPool.COLON);
+                // 跳过分块ID
+                if (userIdBlogId.length != 2) {
+                    continue;
+                }
+                Long blogId = Long.valueOf(userIdBlogId[1]);
+                long delta = Long.parseLong(entry.getValue().toString());
+                expectedMap.merge(blogId, delta, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * 事件流中的事件在落库确认后即被删除，剩余事件均未同步
+     */
+    private void sumUnsyncedEvents(String streamKey, Map<Long, Long> expectedMap) {
+        StreamOperations<String, String, String> streamOperations = stringRedisTemplate.opsForStream();
+        Range<String> range = Range.unbounded();
+        while (true) {
+            List<MapRecord<String, String, String>> records = streamOperations.range(streamKey, range, Limit.limit().count(SCAN_COUNT));
+            if (CollUtil.isEmpty(records)) {
+                break;
+            }
+            for (MapRecord<String, String, String> record : records) {
+                String blogId = record.getValue().get("blogId");
+                String type = record.getValue().get("type");
+                if (NumberUtil.isLong(blogId) && NumberUtil.isInteger(type)) {
+                    expectedMap.merge(Long.valueOf(blogId), Long.valueOf(type), Long::sum);
+                }
+            }
+            if (records.size() < SCAN_COUNT) {
+                break;
+            }
+            String lastId = records.get(records.size() - 1).getId().getValue();
+            range = Range.of(Range.Bound.exclusive(lastId), Range.Bound.unbounded());
+        }
+    }
+}
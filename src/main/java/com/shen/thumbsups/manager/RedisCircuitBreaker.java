@@ -0,0 +1,147 @@
+package com.shen.thumbsups.manager;
+
+
+import com.shen.thumbsups.common.ErrorCode;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 点赞写入路径的 Redis 断路器
+ * 1. 每次调用在虚拟线程中执行并限时，超时、异常与慢调用都计为失败，成功的快速调用清零
+ * 2. 连续失败达到阈值后断开，写入改走本地日志（ThumbWriteAheadLog），请求线程不再等待 Redis
+ * 3. 断开一段时间后由回放任务探测 Redis，回放完本地日志再闭合
+ */
+@Component
+@Slf4j
+public class RedisCircuitBreaker {
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile boolean open;
+
+    private volatile long openedAt;
+
+    public boolean isClosed() {
+        return !open;
+    }
+
+    /**
+     * 已断开足够长时间，可以探测 Redis
+     */
+    public boolean isProbeDue() {
+        return open && System.currentTimeMillis() - openedAt >= thumbProperties.getWal().getOpenMs();
+    }
+
+    /**
+     * 执行 Redis 调用
+     *
+     * @param call     Redis 调用
+     * @param fallback 调用失败且断路器已断开时的降级处理
+     * @return 调用结果或降级结果
+     */
+    public <T> T execute(Supplier<T> call, Supplier<T> fallback) {
+        ThumbProperties.Wal wal = thumbProperties.getWal();
+        if (!wal.isEnabled()) {
+            return call.get();
+        }
+        long start = System.currentTimeMillis();
+        Future<T> future = executor.submit(call::get);
+        RuntimeException failure = null;
+        try {
+            T result = future.get(wal.getCallTimeoutMs(), TimeUnit.MILLISECONDS);
+            if (System.currentTimeMillis() - start > wal.getSlowCallMs()) {
+                recordFailure("慢调用");
+            } else {
+                consecutiveFailures.set(0);
+            }
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            recordFailure("调用超时");
+        } catch (ExecutionException e) {
+            recordFailure("调用异常");
+            failure = e.getCause() instanceof RuntimeException runtimeException ? runtimeException : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        }
+        if (open) {
+            return fallback.get();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw new BusinessException(ErrorCode.SYSTEM_ERROR, "系统繁忙，请稍后重试");
+    }
+
+    /**
+     * 探测 Redis 是否恢复：调用成功且未超过慢调用阈值
+     */
+    public boolean probe(Runnable ping) {
+        ThumbProperties.Wal wal = thumbProperties.getWal();
+        long start = System.currentTimeMillis();
+        Future<?> future = executor.submit(ping);
+        try {
+            future.get(wal.getCallTimeoutMs(), TimeUnit.MILLISECONDS);
+            return System.currentTimeMillis() - start <= wal.getSlowCallMs();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            future.cancel(true);
+            return false;
+        } finally {
+            // 未恢复时重新计时
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 断开断路器
+     */
+    public void trip(String reason) {
+        if (!open) {
+            log.warn("Redis 断路器断开，点赞写入改写本地日志，原因：{}", reason);
+        }
+        openedAt = System.currentTimeMillis();
+        open = true;
+    }
+
+    /**
+     * 闭合断路器，由回放任务在本地日志回放完成后调用
+     */
+    public void close() {
+        consecutiveFailures.set(0);
+        open = false;
+        log.info("Redis 断路器闭合，点赞写入恢复到 Redis");
+    }
+
+    private void recordFailure(String reason) {
+        if (consecutiveFailures.incrementAndGet() >= thumbProperties.getWal().getFailureThreshold()) {
+            trip(reason);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,141 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.util.NumberUtil;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.domain.Blog;
+import com.shen.thumbsups.mapper.BlogMapper;
+import com.shen.thumbsups.mapper.BlogThumbSlotMapper;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * 博客点赞数管理器
+ * 普通博客直接更新 blog.thumbCount；被热 key 探测器标记的博客不再更新同一行，避免所有点赞排队等锁：
+ * 1. 开启分片计数（thumb.stripe.enabled）时写入随机计数槽，与点赞记录在同一事务提交，计数槽定时合并回 blog.thumbCount
+ * 2. 关闭分片计数且开启本地聚合（thumb.aggregate.enabled）时在提交后累加到本地聚合器，进程崩溃会丢失未刷新的增量
+ * 两者都开启时使用分片计数；本地聚合器另外负责 Redis 模式下的实时点赞计数，不受分片计数影响
+ */
+@Component
+@Slf4j
+public class ThumbCountManager {
+
+    /**
+     * 每轮合并的博客数量上限
+     */
+    private static final int FOLD_BATCH_SIZE = 200;
+
+    @Resource
+    private BlogMapper blogMapper;
+
+    @Resource
+    private BlogThumbSlotMapper blogThumbSlotMapper;
+
+    @Resource
+    private TopK hotKeyDetector;
+
+    @Resource
+    private ThumbDeltaAggregator thumbDeltaAggregator;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private BlogDetailCacheManager blogDetailCacheManager;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    /**
+     * 当前的热点博客（来自热 key 探测器，定时刷新）
+     */
+    private volatile Set<Long> hotBlogIds = Set.of();
+
+    /**
+     * 调整博客点赞数，需在调用方事务中执行
+     *
+     * @param blogId 博客ID
+     * @param delta  变化量
+     * @return       是否更新成功
+     */
+    public boolean incr(long blogId, long delta) {
+        if (isStriped(blogId)) {
+            int slot = ThreadLocalRandom.current().nextInt(thumbProperties.getStripe().getSlots());
+            return blogThumbSlotMapper.addToSlot(blogId, slot, delta) > 0;
+        }
+        if (isHot(blogId) && thumbDeltaAggregator.isEnabled()) {
+            thumbDeltaAggregator.add(blogId, delta);
+            return true;
+        }
+        boolean updated = blogMapper.update(null, new LambdaUpdateWrapper<Blog>()
+                .eq(Blog::getId, blogId)
+                .setSql("thumbCount = thumbCount + " + delta)) > 0;
+        if (updated) {
+            blogDetailCacheManager.incrThumbCount(Map.of(blogId, delta));
+        }
+        return updated;
+    }
+
+    /**
+     * 记录一次点赞写入，供热 key 探测器识别热点博客
+     */
+    public void recordThumb(long blogId) {
+        hotKeyDetector.add(String.valueOf(blogId), 1);
+    }
+
+    /**
+     * 当前的热点博客
+     */
+    public Set<Long> getHotBlogIds() {
+        return hotBlogIds;
+    }
+
+    public boolean isHot(long blogId) {
+        return hotBlogIds.contains(blogId);
+    }
+
+    public boolean isStriped(long blogId) {
+        return thumbProperties.getStripe().isEnabled() && isHot(blogId);
+    }
+
+    /**
+     * 刷新热点博客集合，并把计数槽合并回 blog.thumbCount
+     */
+    @Scheduled(initialDelay = 1000, fixedDelay = 1000)
+    public void foldSlots() {
+        hotBlogIds = hotKeyDetector.list().stream()
+                .map(Item::key)
+                .filter(NumberUtil::isLong)
+                .map(Long::valueOf)
+                .collect(Collectors.toUnmodifiableSet());
+
+        List<Long> blogIds = blogThumbSlotMapper.listBlogIds(FOLD_BATCH_SIZE);
+        for (Long blogId : blogIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // 锁住该博客的全部计数槽，合并与删除在同一事务内完成
+                    long sum = blogThumbSlotMapper.sumForUpdate(blogId);
+                    if (sum != 0) {
+                        blogMapper.update(null, new LambdaUpdateWrapper<Blog>()
+                                .eq(Blog::getId, blogId)
+                                .setSql("thumbCount = thumbCount + " + sum));
+                        blogDetailCacheManager.incrThumbCount(Map.of(blogId, sum));
+                    }
+                    blogThumbSlotMapper.deleteByBlogId(blogId);
+                });
+            } catch (Exception e) {
+                log.error("合并博客点赞计数槽失败，blogId = {}", blogId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.shen.thumbsups.manager;
+
+
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 热点博客点赞增量本地聚合器
+ * 热点博客的每次点赞只累加本地 LongAdder，由定时任务合并后批量写出：
+ * 1. 数据库模式（关闭分片计数时）：合并后按 blogId 分块写库，每块单独提交
+ * 2. Redis 模式：合并成一次 pipeline INCRBY 写入博客实时点赞计数
+ * 用户去重仍以点赞记录为准，这里只聚合计数
+ */
+@Component
+@Slf4j
+public class ThumbDeltaAggregator {
+
+    @Resource
+    private BlogThumbCountUpdater blogThumbCountUpdater;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    /**
+     * 待写入 blog.thumbCount 的增量
+     */
+    private final Channel dbChannel = new Channel("db", deltaMap -> blogThumbCountUpdater.update(deltaMap));
+
+    /**
+     * 待写入 Redis 博客实时点赞计数的增量
+     */
+    private final Channel liveChannel = new Channel("live", this::incrLiveCounts);
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return thumbProperties.getAggregate().isEnabled();
+    }
+
+    /**
+     * 累加待写库的增量；处于事务中时在提交后才累加，回滚的点赞不会计入
+     *
+     * @param blogId 博客ID
+     * @param delta  变化量
+     */
+    public void add(long blogId, long delta) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            dbChannel.add(blogId, delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dbChannel.add(blogId, delta);
+            }
+        });
+    }
+
+    /**
+     * 累加待写入 Redis 实时计数的增量（Lua 脚本已完成用户去重）
+     *
+     * @param blogId 博客ID
+     * @param delta  变化量
+     */
+    public void addLive(long blogId, long delta) {
+        liveChannel.add(blogId, delta);
+    }
+
+    @Scheduled(initialDelayString = "${thumb.aggregate.flush-interval-ms:200}", fixedDelayString = "${thumb.aggregate.flush-interval-ms:200}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            dbChannel.flush();
+            liveChannel.flush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void incrLiveCounts(Map<Long, Long> deltaMap) {
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            deltaMap.forEach((blogId, delta) -> connection.stringCommands()
+                    .incrBy(stringSerializer.serialize(RedisKeyUtil.getBlogThumbCountKey(blogId)), delta));
+            return null;
+        });
+    }
+
+    /**
+     * 本节点尚未写库的增量
+     */
+    public long pending(long blogId) {
+        return dbChannel.pending(blogId);
+    }
+
+    /**
+     * 本节点尚未写入 Redis 实时计数的增量
+     */
+    public long pendingLive(long blogId) {
+        return liveChannel.pending(blogId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flush();
+    }
+
+    /**
+     * 一组按博客聚合的计数器及其写出方式
+     */
+    private class Channel {
+
+        private final String name;
+
+        private final Consumer<Map<Long, Long>> sink;
+
+        private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+        Channel(String name, Consumer<Map<Long, Long>> sink) {
+            this.name = name;
+            this.sink = sink;
+        }
+
+        void add(long blogId, long delta) {
+            while (delta != 0) {
+                Counter counter = counters.computeIfAbsent(blogId, id -> new Counter());
+                counter.adder.add(delta);
+                if (!counter.retired) {
+                    return;
+                }
+                // 计数器已被 drain 移除：取回 drain 尚未取走的增量，写入新的计数器
+                delta = counter.adder.sumThenReset();
+            }
+        }
+
+        long pending(long blogId) {
+            Counter counter = counters.get(blogId);
+            return counter == null ? 0 : counter.adder.sum();
+        }
+
+        void flush() {
+            Map<Long, Long> deltaMap = drain();
+            if (deltaMap.isEmpty()) {
+                return;
+            }
+            try {
+                sink.accept(deltaMap);
+            } catch (Exception e) {
+                // 写出失败时把增量放回（已提交的分块已从 deltaMap 中移除），下一轮重试
+                log.error("刷新热点博客点赞增量失败，channel = {}，博客数 = {}", name, deltaMap.size(), e);
+                deltaMap.forEach(this::add);
+            }
+        }
+
+        /**
+         * 取出全部未刷新的增量，并释放长时间空闲的计数器
+         */
+        private Map<Long, Long> drain() {
+            int idleRounds = thumbProperties.getAggregate().getIdleRounds();
+            Map<Long, Long> deltaMap = new HashMap<>();
+            for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+                Long blogId = entry.getKey();
+                Counter counter = entry.getValue();
+                long delta = counter.adder.sumThenReset();
+                if (delta != 0) {
+                    deltaMap.put(blogId, delta);
+                    counter.idleRounds.set(0);
+                } else if (counter.idleRounds.incrementAndGet() >= idleRounds && counters.remove(blogId, counter)) {
+                    // 连续多轮没有增量才移除；移除前已拿到该计数器的写入方可能仍在写入：
+                    // 标记之后再取一次，标记前写入的增量在这里取走，标记后写入的由写入方转移到新的计数器
+                    counter.retired = true;
+                    long late = counter.adder.sumThenReset();
+                    if (late != 0) {
+                        deltaMap.put(blogId, late);
+                    }
+                }
+            }
+            return deltaMap;
+        }
+    }
+
+    private static class Counter {
+        final LongAdder adder = new LongAdder();
+        final AtomicInteger idleRounds = new AtomicInteger();
+        /**
+         * 已从 counters 中移除，之后写入的增量需要转移到新的计数器
+         */
+        volatile boolean retired;
+    }
+}
@@ -0,0 +1,210 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.collection.CollUtil;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.RedisLuaScriptConstant;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.domain.enums.ThumbMembershipStoreEnum;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.Resource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户点赞记录（是否点赞）的 Redis 存储
+ * HASH：thumb:{userId} 中 field 为 blogId
+ * BITMAP：thumb:bitmap:{userId}:{bucket} 中 offset 为 blogId 在桶内的位置，重度用户内存占用远小于 Hash
+ * 从 HASH 切换到 BITMAP 后，迁移完成标记出现之前位图中没有的记录再查 Hash，取消点赞同时删除 Hash 中的记录
+ */
+@Component
+public class ThumbMembershipManager {
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    /**
+     * 未迁移完成时重新查询完成标记的间隔
+     */
+    private static final long MIGRATED_CHECK_INTERVAL_MS = 5000;
+
+    private volatile boolean migrated;
+
+    private volatile long migratedCheckedAt;
+
+    public boolean isBitmap() {
+        return thumbProperties.getMembership().getStore() == ThumbMembershipStoreEnum.BITMAP;
+    }
+
+    /**
+     * 位图模式下是否还需要读取 Hash：迁移完成标记出现之前为 true，标记出现后不再查询
+     */
+    public boolean isReadingHash() {
+        if (!isBitmap() || migrated) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - migratedCheckedAt >= MIGRATED_CHECK_INTERVAL_MS) {
+            migratedCheckedAt = now;
+            migrated = Boolean.TRUE.equals(redisTemplate.hasKey(ThumbConstant.USER_THUMB_BITMAP_MIGRATED_KEY));
+        }
+        return !migrated;
+    }
+
+    /**
+     * 设置迁移完成标记，其他节点在查询间隔内陆续停止读取 Hash
+     */
+    public void markMigrated() {
+        redisTemplate.opsForValue().set(ThumbConstant.USER_THUMB_BITMAP_MIGRATED_KEY, System.currentTimeMillis());
+        migrated = true;
+    }
+
+    /**
+     * 点赞 / 取消点赞使用的 Lua 脚本
+     */
+    public RedisScript<Long> script(boolean thumb) {
+        if (thumbProperties.getStream().isEnabled()) {
+            if (isBitmap()) {
+                return thumb ? RedisLuaScriptConstant.THUMB_BITMAP_STREAM_SCRIPT : RedisLuaScriptConstant.UNTHUMB_BITMAP_STREAM_SCRIPT;
+            }
+            return thumb ? RedisLuaScriptConstant.THUMB_STREAM_SCRIPT : RedisLuaScriptConstant.UNTHUMB_STREAM_SCRIPT;
+        }
+        if (isBitmap()) {
+            return thumb ? RedisLuaScriptConstant.THUMB_BITMAP_SCRIPT : RedisLuaScriptConstant.UNTHUMB_BITMAP_SCRIPT;
+        }
+        return thumb ? RedisLuaScriptConstant.THUMB_SCRIPT : RedisLuaScriptConstant.UNTHUMB_SCRIPT;
+    }
+
+    /**
+     * 用户点赞记录键（脚本 KEYS[2]）
+     */
+    public String membershipKey(Long userId, Long blogId) {
+        if (isBitmap()) {
+            return RedisKeyUtil.getUserThumbBitmapKey(userId, blogId);
+        }
+        return RedisKeyUtil.getUserThumbKey(userId);
+    }
+
+    /**
+     * 脚本 KEYS：临时点赞记录（或点赞事件流）、用户点赞记录、博客实时点赞计数，位图模式下再加上迁移前的 Hash
+     */
+    public List<String> scriptKeys(String tempThumbKey, Long userId, Long blogId) {
+        if (isBitmap()) {
+            return List.of(tempThumbKey, membershipKey(userId, blogId), RedisKeyUtil.getBlogThumbCountKey(blogId),
+                    RedisKeyUtil.getUserThumbKey(userId));
+        }
+        return List.of(tempThumbKey, membershipKey(userId, blogId), RedisKeyUtil.getBlogThumbCountKey(blogId));
+    }
+
+    /**
+     * 脚本 ARGV，均为数值类型，经值序列化后与 Lua 中的字符串形式一致
+     *
+     * @param countInScript 是否由脚本更新博客实时点赞计数（热点博客由本地聚合器批量更新）
+     */
+    public Object[] scriptArgs(Long userId, Long blogId, boolean countInScript) {
+        int countFlag = countInScript ? 1 : 0;
+        if (isBitmap()) {
+            int readHashFlag = isReadingHash() ? 1 : 0;
+            return new Object[]{userId, blogId, RedisKeyUtil.getUserThumbBitmapOffset(blogId), countFlag, readHashFlag};
+        }
+        return new Object[]{userId, blogId, countFlag};
+    }
+
+    public Boolean hasThumb(Long userId, Long blogId) {
+        if (isBitmap()) {
+            Boolean hasThumb = redisTemplate.opsForValue().getBit(RedisKeyUtil.getUserThumbBitmapKey(userId, blogId),
+                    RedisKeyUtil.getUserThumbBitmapOffset(blogId));
+            if (Boolean.TRUE.equals(hasThumb) || !isReadingHash()) {
+                return hasThumb;
+            }
+        }
+        return redisTemplate.opsForHash().hasKey(RedisKeyUtil.getUserThumbKey(userId), blogId.toString());
+    }
+
+    /**
+     * 在调用方的 pipeline 中查询是否点赞，结果为 Boolean
+     */
+    public void hasThumb(RedisConnection connection, Long userId, Long blogId) {
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        if (isReadingHash()) {
+            // 一条命令返回一个结果，调用方按位置取值
+            connection.scriptingCommands().eval(
+                    stringSerializer.serialize(RedisLuaScriptConstant.HAS_THUMB_BITMAP_SCRIPT.getScriptAsString()), ReturnType.BOOLEAN, 2,
+                    stringSerializer.serialize(RedisKeyUtil.getUserThumbBitmapKey(userId, blogId)),
+                    stringSerializer.serialize(RedisKeyUtil.getUserThumbKey(userId)),
+                    stringSerializer.serialize(blogId.toString()),
+                    stringSerializer.serialize(String.valueOf(RedisKeyUtil.getUserThumbBitmapOffset(blogId))));
+            return;
+        }
+        if (isBitmap()) {
+            connection.stringCommands().getBit(stringSerializer.serialize(RedisKeyUtil.getUserThumbBitmapKey(userId, blogId)),
+                    RedisKeyUtil.getUserThumbBitmapOffset(blogId));
+            return;
+        }
+        connection.hashCommands().hExists(stringSerializer.serialize(RedisKeyUtil.getUserThumbKey(userId)),
+                stringSerializer.serialize(blogId.toString()));
+    }
+
+    /**
+     * 批量查询是否点赞，一次 Redis 往返
+     *
+     * @param userId  用户ID
+     * @param blogIds 博客ID
+     * @return        blogId -> 是否点赞
+     */
+    public Map<Long, Boolean> hasThumbBatch(Long userId, Collection<Long> blogIds) {
+        Map<Long, Boolean> result = new HashMap<>();
+        if (CollUtil.isEmpty(blogIds)) {
+            return result;
+        }
+        List<Long> blogIdList = new ArrayList<>(blogIds);
+        List<?> values;
+        if (isBitmap()) {
+            RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+            values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long blogId : blogIdList) {
+                    connection.stringCommands().getBit(
+                            stringSerializer.serialize(RedisKeyUtil.getUserThumbBitmapKey(userId, blogId)),
+                            RedisKeyUtil.getUserThumbBitmapOffset(blogId));
+                }
+                return null;
+            });
+        } else {
+            List<Object> fields = blogIdList.stream().map(blogId -> (Object) blogId.toString()).toList();
+            values = redisTemplate.opsForHash().multiGet(RedisKeyUtil.getUserThumbKey(userId), fields);
+        }
+        List<Long> missing = new ArrayList<>();
+        for (int i = 0; i < blogIdList.size(); i++) {
+            Object value = values.get(i);
+            boolean hasThumb = value != null && !Boolean.FALSE.equals(value);
+            result.put(blogIdList.get(i), hasThumb);
+            if (!hasThumb) {
+                missing.add(blogIdList.get(i));
+            }
+        }
+        if (!missing.isEmpty() && isReadingHash()) {
+            List<Object> fields = missing.stream().map(blogId -> (Object) blogId.toString()).toList();
+            List<Object> hashValues = redisTemplate.opsForHash().multiGet(RedisKeyUtil.getUserThumbKey(userId), fields);
+            for (int i = 0; i < missing.size(); i++) {
+                if (hashValues.get(i) != null) {
+                    result.put(missing.get(i), true);
+                }
+            }
+        }
+        return result;
+    }
+}
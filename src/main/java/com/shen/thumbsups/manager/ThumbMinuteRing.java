@@ -0,0 +1,156 @@
+package com.shen.thumbsups.manager;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 单个博客的每分钟点赞数环形缓冲区
+ * counts[minute % size] 保存该分钟的点赞数，写入更新的分钟时清零被覆盖的槽位，只保留最近 size 分钟
+ * 序列化为稀疏格式：最新分钟（long）+ 非零槽位数（int）+ 每个槽位的 (距最新分钟的分钟数（short）, 点赞数（int）)
+ */
+public class ThumbMinuteRing {
+
+    public static final int MAX_SIZE = Short.MAX_VALUE;
+
+    private final int[] counts;
+
+    /**
+     * 最新一个槽位对应的分钟（epoch 分钟）
+     */
+    private long headMinute;
+
+    /**
+     * 上次快照后是否有新的点赞
+     */
+    private boolean dirty;
+
+    /**
+     * 是否已合并 Redis 中本节点之前的快照
+     */
+    private boolean restored;
+
+    /**
+     * @param size 保留的分钟数，序列化时以 short 保存距最新分钟的分钟数，不能超过 Short.MAX_VALUE
+     */
+    public ThumbMinuteRing(int size, long headMinute) {
+        if (size <= 0 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("保留分钟数必须在 1 到 " + MAX_SIZE + " 之间：" + size);
+        }
+        this.counts = new int[size];
+        this.headMinute = headMinute;
+    }
+
+    public synchronized void add(long minute, int delta) {
+        addLocked(minute, delta);
+        dirty = true;
+    }
+
+    /**
+     * 该分钟的点赞数，超出保留范围时为 0
+     */
+    public synchronized int count(long minute) {
+        if (minute > headMinute || minute <= headMinute - counts.length) {
+            return 0;
+        }
+        return counts[index(minute)];
+    }
+
+    /**
+     * 累加另一个缓冲区的点赞数（不标记为需要快照）
+     */
+    public void merge(ThumbMinuteRing other) {
+        long otherHead;
+        int[] otherCounts;
+        synchronized (other) {
+            otherHead = other.headMinute;
+            otherCounts = other.counts.clone();
+        }
+        synchronized (this) {
+            for (int age = 0; age < otherCounts.length; age++) {
+                long minute = otherHead - age;
+                int count = otherCounts[Math.floorMod(minute, otherCounts.length)];
+                if (count != 0 && minute <= headMinute) {
+                    addLocked(minute, count);
+                }
+            }
+        }
+    }
+
+    public synchronized long getHeadMinute() {
+        return headMinute;
+    }
+
+    public synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    public synchronized void markDirty() {
+        dirty = true;
+    }
+
+    public synchronized boolean isRestored() {
+        return restored;
+    }
+
+    public synchronized void markRestored() {
+        restored = true;
+    }
+
+    /**
+     * 序列化并清除 dirty 标记
+     */
+    public synchronized byte[] encode() {
+        int nonZero = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                nonZero++;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + nonZero * (Short.BYTES + Integer.BYTES));
+        buffer.putLong(headMinute);
+        buffer.putInt(nonZero);
+        for (int age = 0; age < counts.length; age++) {
+            int count = counts[index(headMinute - age)];
+            if (count != 0) {
+                buffer.putShort((short) age);
+                buffer.putInt(count);
+            }
+        }
+        dirty = false;
+        return buffer.array();
+    }
+
+    /**
+     * 反序列化，超出 size 分钟的槽位丢弃
+     */
+    public static ThumbMinuteRing decode(byte[] bytes, int size) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ThumbMinuteRing ring = new ThumbMinuteRing(size, buffer.getLong());
+        int nonZero = buffer.getInt();
+        for (int i = 0; i < nonZero; i++) {
+            int age = Short.toUnsignedInt(buffer.getShort());
+            int count = buffer.getInt();
+            if (age < size) {
+                ring.counts[ring.index(ring.headMinute - age)] = count;
+            }
+        }
+        return ring;
+    }
+
+    private void addLocked(long minute, int delta) {
+        if (minute > headMinute) {
+            // 清零被新分钟覆盖的槽位
+            long steps = Math.min(minute - headMinute, counts.length);
+            for (long m = minute - steps + 1; m <= minute; m++) {
+                counts[index(m)] = 0;
+            }
+            headMinute = minute;
+        } else if (minute <= headMinute - counts.length) {
+            return;
+        }
+        counts[index(minute)] += delta;
+    }
+
+    private int index(long minute) {
+        return Math.floorMod(minute, counts.length);
+    }
+}
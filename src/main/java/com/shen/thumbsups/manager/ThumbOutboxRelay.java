@@ -0,0 +1,171 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.DateUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.domain.ThumbOutbox;
+import com.shen.thumbsups.domain.enums.ThumbTypeEnum;
+import com.shen.thumbsups.mapper.ThumbOutboxMapper;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 点赞发件箱投递器
+ * 1. 事务提交后立即投递本次写入的记录（提交前不会触碰 Redis，回滚也不会留下脏数据）
+ * 2. 即时投递失败的记录由定时任务按批次补偿，保证至少投递一次
+ * 3. 同一用户与博客的记录按ID顺序投递：有更早的记录未投递时即时投递让给补偿任务，
+ *    补偿任务只在持有分片 0 同步租约的节点上运行，避免旧记录覆盖新记录
+ * 4. 记录未投递期间 Redis 中的点赞状态可能落后，调用方应通过 hasPending 判断并改查数据库
+ */
+@Component
+@Slf4j
+public class ThumbOutboxRelay {
+
+    @Resource
+    private ThumbOutboxMapper thumbOutboxMapper;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private CacheManager cacheManager;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Resource
+    private ThumbSyncLeaseManager thumbSyncLeaseManager;
+
+    private final ReentrantLock relayLock = new ReentrantLock();
+
+    /**
+     * 写入发件箱，并在当前事务提交后投递
+     *
+     * @param outbox 发件箱记录
+     */
+    public void record(ThumbOutbox outbox) {
+        thumbOutboxMapper.insert(outbox);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            relayInOrder(outbox);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    relayInOrder(outbox);
+                } catch (Exception e) {
+                    // 留在发件箱中，由补偿任务重新投递
+                    log.warn("发件箱即时投递失败，等待补偿，id = {}", outbox.getId(), e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 该用户对该博客是否有尚未投递的记录（此时 Redis 中的点赞状态不可信）
+     */
+    public boolean hasPending(Long userId, Long blogId) {
+        return thumbOutboxMapper.exists(new LambdaQueryWrapper<ThumbOutbox>()
+                .eq(ThumbOutbox::getUserId, userId)
+                .eq(ThumbOutbox::getBlogId, blogId));
+    }
+
+    /**
+     * 补偿投递：按ID顺序分批处理超过宽限期仍未投递的记录
+     * 只在持有分片 0 同步租约的节点上运行，多个节点并发补偿会打乱同一键的投递顺序
+     */
+    @Scheduled(initialDelay = 10000, fixedDelay = 5000)
+    public void relayPending() {
+        if (thumbSyncLeaseManager.fenceOf(0) == null || !relayLock.tryLock()) {
+            return;
+        }
+        try {
+            int batchSize = thumbProperties.getOutbox().getBatchSize();
+            while (true) {
+                LambdaQueryWrapper<ThumbOutbox> wrapper = new LambdaQueryWrapper<ThumbOutbox>()
+                        .lt(ThumbOutbox::getCreateTime, DateUtil.offsetSecond(DateUtil.date(), -thumbProperties.getOutbox().getGraceSeconds()))
+                        .orderByAsc(ThumbOutbox::getId)
+                        .last("limit " + batchSize);
+                List<ThumbOutbox> batch = thumbOutboxMapper.selectList(wrapper);
+                if (CollUtil.isEmpty(batch)) {
+                    return;
+                }
+                relay(batch);
+                log.info("发件箱补偿投递 {} 条记录", batch.size());
+                if (batch.size() < batchSize) {
+                    return;
+                }
+            }
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    /**
+     * 即时投递一条记录：同一用户与博客有更早的记录未投递时留给补偿任务按ID顺序投递
+     * 更早的记录投递成功后才会被删除，所以补偿任务正在投递时也会让出
+     */
+    private void relayInOrder(ThumbOutbox outbox) {
+        boolean hasEarlier = thumbOutboxMapper.exists(new LambdaQueryWrapper<ThumbOutbox>()
+                .eq(ThumbOutbox::getUserId, outbox.getUserId())
+                .eq(ThumbOutbox::getBlogId, outbox.getBlogId())
+                .lt(ThumbOutbox::getId, outbox.getId()));
+        if (hasEarlier) {
+            log.info("存在更早的未投递记录，等待补偿任务按顺序投递，id = {}", outbox.getId());
+            return;
+        }
+        relay(List.of(outbox));
+    }
+
+    /**
+     * 一次 pipeline 写入 Redis，随后更新本地缓存并删除发件箱记录
+     * 写入操作均为幂等的 HSET / HDEL，重复投递不会产生副作用
+     */
+    private void relay(List<ThumbOutbox> batch) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (ThumbOutbox outbox : batch) {
+                    String hashKey = RedisKeyUtil.getUserThumbKey(outbox.getUserId());
+                    String fieldKey = outbox.getBlogId().toString();
+                    if (outbox.getType() == ThumbTypeEnum.INCR.getValue()) {
+                        ops.opsForHash().put(hashKey, fieldKey, outbox.getThumbId());
+                    } else {
+                        ops.opsForHash().delete(hashKey, fieldKey);
+                    }
+                }
+                return null;
+            }
+        });
+
+        for (ThumbOutbox outbox : batch) {
+            String hashKey = RedisKeyUtil.getUserThumbKey(outbox.getUserId());
+            String fieldKey = outbox.getBlogId().toString();
+            Object value = outbox.getType() == ThumbTypeEnum.INCR.getValue()
+                    ? outbox.getThumbId()
+                    : ThumbConstant.UN_THUMB_CONSTANT;
+            cacheManager.putIfPresent(hashKey, fieldKey, value);
+        }
+
+        List<Long> ids = batch.stream().map(ThumbOutbox::getId).toList();
+        thumbOutboxMapper.delete(new LambdaQueryWrapper<ThumbOutbox>().in(ThumbOutbox::getId, ids));
+    }
+}
@@ -0,0 +1,83 @@
+package com.shen.thumbsups.manager;
+
+
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 点赞临时数据时间片
+ * 时间片ID = 纪元秒 / 时间片长度，跨天不会重复；每个时间片按 userId 拆成多个分片，
+ * 避免单个时间片成为集中写入的热 key
+ */
+@Component
+public class ThumbSliceManager {
+
+    private static final Pattern TEMP_THUMB_SHARD_KEY_PATTERN = Pattern.compile("^thumb:temp:\\{(\\d+):(\\d+)}$");
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    public long currentSliceId() {
+        return System.currentTimeMillis() / 1000 / thumbProperties.getSlice().getWindowSeconds();
+    }
+
+    public int shardCount() {
+        return thumbProperties.getSlice().getShards();
+    }
+
+    public int shard(long userId) {
+        return (int) Math.floorMod(userId, (long) shardCount());
+    }
+
+    /**
+     * 用户当前写入的临时点赞记录键
+     */
+    public String currentTempThumbKey(long userId) {
+        return RedisKeyUtil.getTempThumbKey(currentSliceId(), shard(userId));
+    }
+
+    /**
+     * 点赞写入缓冲键（脚本 KEYS[1]）：开启事件流时为用户所在的事件流分片，否则为当前时间片分片
+     */
+    public String currentBufferKey(long userId) {
+        ThumbProperties.Stream stream = thumbProperties.getStream();
+        if (stream.isEnabled()) {
+            return RedisKeyUtil.getThumbStreamKey((int) Math.floorMod(userId, (long) stream.getShards()));
+        }
+        return currentTempThumbKey(userId);
+    }
+
+    /**
+     * 时间片的全部分片键
+     */
+    public List<String> tempThumbKeys(long sliceId) {
+        List<String> keys = new ArrayList<>(shardCount());
+        for (int shard = 0; shard < shardCount(); shard++) {
+            keys.add(RedisKeyUtil.getTempThumbKey(sliceId, shard));
+        }
+        return keys;
+    }
+
+    /**
+     * 从分片键中解析时间片ID，旧格式（HH:mm:ss）的键返回 null
+     */
+    public Long parseSliceId(String tempThumbKey) {
+        Matcher matcher = TEMP_THUMB_SHARD_KEY_PATTERN.matcher(tempThumbKey);
+        return matcher.matches() ? Long.valueOf(matcher.group(1)) : null;
+    }
+
+    /**
+     * 从分片键中解析分片，旧格式（HH:mm:ss）的键归入分片 0
+     */
+    public int parseShard(String tempThumbKey) {
+        Matcher matcher = TEMP_THUMB_SHARD_KEY_PATTERN.matcher(tempThumbKey);
+        return matcher.matches() ? Integer.parseInt(matcher.group(2)) : 0;
+    }
+}
@@ -0,0 +1,189 @@
+package com.shen.thumbsups.manager;
+
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.RuntimeUtil;
+import com.shen.thumbsups.common.ErrorCode;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.exception.BusinessException;
+import com.shen.thumbsups.mapper.ThumbSyncLeaseMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 临时点赞分片的同步租约
+ * 每个分片（thumb:temp:{sliceId:shard} 中的 shard）同一时间只由一个节点同步：
+ * 1. 节点定期在 Redis 中心跳，按存活节点数计算应持有的份额，多余的租约主动释放，不足时抢占已过期的租约
+ * 2. 抢占成功时栅栏令牌加一；同步写库的事务内共享锁定并校验令牌，租约被接管后旧节点的写入整体回滚
+ * 3. 节点宕机后其租约在过期后由其他节点接管，未完成的同步从中断处继续
+ * 关闭租约时本节点持有全部分片，令牌固定为 0
+ */
+@Component
+@Slf4j
+public class ThumbSyncLeaseManager {
+
+    @Resource
+    private ThumbSyncLeaseMapper thumbSyncLeaseMapper;
+
+    @Resource
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    /**
+     * 节点ID：主机名 + 进程号 + 随机串，重启后视为新节点
+     */
+    @Getter
+    private final String nodeId = NetUtil.getLocalHostName() + ":" + RuntimeUtil.getPid() + ":" + RandomUtil.randomString(6);
+
+    /**
+     * 本节点持有的租约：分片 -> 栅栏令牌
+     */
+    private final Map<Integer, Long> ownedLeases = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        for (int shard = 0; shard < thumbProperties.getSlice().getShards(); shard++) {
+            thumbSyncLeaseMapper.initShard(shard);
+        }
+        maintain();
+    }
+
+    public boolean isEnabled() {
+        return thumbProperties.getLease().isEnabled();
+    }
+
+    /**
+     * 本节点持有的分片及其令牌
+     */
+    public Map<Integer, Long> ownedLeases() {
+        if (!isEnabled()) {
+            Map<Integer, Long> all = new HashMap<>();
+            for (int shard = 0; shard < thumbProperties.getSlice().getShards(); shard++) {
+                all.put(shard, 0L);
+            }
+            return all;
+        }
+        return new HashMap<>(ownedLeases);
+    }
+
+    /**
+     * 分片的令牌，本节点未持有时返回 null
+     */
+    public Long fenceOf(int shard) {
+        return isEnabled() ? ownedLeases.get(shard) : Long.valueOf(0L);
+    }
+
+    /**
+     * 在写库事务中调用：共享锁定租约直到事务结束，令牌不匹配时抛出异常使事务回滚
+     */
+    public void checkFence(int shard, long fence) {
+        if (!isEnabled()) {
+            return;
+        }
+        if (thumbSyncLeaseMapper.lockValid(shard, nodeId, fence) == 0) {
+            ownedLeases.remove(shard, fence);
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "同步租约已失效，shard = " + shard);
+        }
+    }
+
+    /**
+     * 心跳、续约并重新均衡
+     */
+    @Scheduled(initialDelayString = "${thumb.lease.renew-seconds:10}", fixedDelayString = "${thumb.lease.renew-seconds:10}", timeUnit = TimeUnit.SECONDS)
+    public void maintain() {
+        if (!isEnabled()) {
+            return;
+        }
+        ThumbProperties.Lease lease = thumbProperties.getLease();
+        try {
+            int liveNodes = heartbeat();
+            renew();
+            int shards = thumbProperties.getSlice().getShards();
+            int fairShare = (shards + liveNodes - 1) / liveNodes;
+            rebalance(fairShare, lease.getLeaseSeconds());
+        } catch (Exception e) {
+            log.error("维护同步租约失败", e);
+        }
+    }
+
+    /**
+     * 写入心跳并返回存活节点数（含本节点）
+     */
+    private int heartbeat() {
+        long now = System.currentTimeMillis();
+        long expireBefore = now - thumbProperties.getLease().getLeaseSeconds() * 1000L;
+        redisTemplate.opsForZSet().add(ThumbConstant.SYNC_NODE_KEY, nodeId, now);
+        redisTemplate.opsForZSet().removeRangeByScore(ThumbConstant.SYNC_NODE_KEY, 0, expireBefore);
+        Long liveNodes = redisTemplate.opsForZSet().zCard(ThumbConstant.SYNC_NODE_KEY);
+        return liveNodes == null || liveNodes < 1 ? 1 : liveNodes.intValue();
+    }
+
+    private void renew() {
+        int leaseSeconds = thumbProperties.getLease().getLeaseSeconds();
+        ownedLeases.forEach((shard, fence) -> {
+            if (thumbSyncLeaseMapper.renew(shard, nodeId, fence, leaseSeconds) == 0) {
+                ownedLeases.remove(shard, fence);
+                log.warn("同步租约续约失败，已被其他节点接管，shard = {}", shard);
+            }
+        });
+    }
+
+    private void rebalance(int fairShare, int leaseSeconds) {
+        // 超出份额的租约释放给新加入的节点
+        List<Integer> owned = new ArrayList<>(ownedLeases.keySet());
+        for (int i = fairShare; i < owned.size(); i++) {
+            Integer shard = owned.get(i);
+            Long fence = ownedLeases.remove(shard);
+            if (fence != null) {
+                thumbSyncLeaseMapper.release(shard, nodeId, fence);
+                log.info("释放同步租约，shard = {}", shard);
+            }
+        }
+        if (ownedLeases.size() >= fairShare) {
+            return;
+        }
+        for (Integer shard : thumbSyncLeaseMapper.listExpiredShards()) {
+            if (ownedLeases.size() >= fairShare) {
+                break;
+            }
+            if (thumbSyncLeaseMapper.acquire(shard, nodeId, leaseSeconds) == 0) {
+                continue;
+            }
+            Long fence = thumbSyncLeaseMapper.selectFence(shard, nodeId);
+            if (fence != null) {
+                ownedLeases.put(shard, fence);
+                log.info("获得同步租约，shard = {}，fence = {}", shard, fence);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (!isEnabled()) {
+            return;
+        }
+        ownedLeases.forEach((shard, fence) -> thumbSyncLeaseMapper.release(shard, nodeId, fence));
+        ownedLeases.clear();
+        redisTemplate.opsForZSet().remove(ThumbConstant.SYNC_NODE_KEY, nodeId);
+    }
+}
@@ -0,0 +1,330 @@
+package com.shen.thumbsups.manager;
+
+
+import com.shen.thumbsups.config.ThumbProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 点赞事件本地预写日志（Redis 降级期间使用）
+ * 日志由固定大小的内存映射段文件组成，只追加写入，写满后滚动到下一个段：
+ * 段头 8 字节记录已回放到的位置，之后是定长记录 [magic | userId | blogId | type | crc32]，
+ * magic 为 0 表示段内尚未写入的位置，crc 不匹配的记录视为进程崩溃时未写完，回放到此为止。
+ * Redis 恢复后按段顺序回放，回放完的段直接删除
+ */
+@Component
+@Slf4j
+public class ThumbWriteAheadLog {
+
+    private static final int MAGIC = 0x54485742;
+
+    private static final int HEADER_SIZE = Long.BYTES;
+
+    private static final int RECORD_SIZE = Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    /**
+     * 回放时每批应用的记录数，每批之后更新段头的回放位置
+     */
+    private static final int REPLAY_BATCH_SIZE = 500;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Path dir;
+
+    private long nextSequence;
+
+    /**
+     * 当前写入的段，降级结束后置空
+     */
+    private Segment active;
+
+    @PostConstruct
+    public void init() throws IOException {
+        dir = Paths.get(thumbProperties.getWal().getDir());
+        Files.createDirectories(dir);
+        List<Path> segments = listSegments();
+        nextSequence = segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1)) + 1;
+        if (segments.isEmpty()) {
+            return;
+        }
+        if (!thumbProperties.getWal().isEnabled()) {
+            // 未开启本地日志时不断开断路器，否则写入既不能走 Redis 也不能写日志；遗留的日志在重新开启后回放
+            log.warn("存在未回放的本地日志，但本地日志未开启，段数 = {}，目录 = {}", segments.size(), dir);
+            return;
+        }
+        // 上次运行留下的日志必须先于新的写入回放，保持同一用户操作的顺序
+        redisCircuitBreaker.trip("存在未回放的本地日志，段数 = " + segments.size());
+    }
+
+    /**
+     * 断路器断开时追加点赞事件
+     *
+     * @return 是否已写入；断路器已闭合或写入失败时返回 false，调用方应改写 Redis
+     */
+    public boolean append(long userId, long blogId, int type) {
+        if (!thumbProperties.getWal().isEnabled() || redisCircuitBreaker.isClosed()) {
+            return false;
+        }
+        lock.lock();
+        try {
+            // 持锁再次检查，回放任务在持锁期间闭合断路器
+            if (redisCircuitBreaker.isClosed()) {
+                return false;
+            }
+            if (active == null || !active.hasRemaining()) {
+                roll();
+            }
+            active.append(userId, blogId, type);
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            log.error("写入点赞本地日志失败", e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按顺序回放全部日志，完成后闭合断路器
+     * 已封存的段与活动段已写入的部分不持锁回放，只有最后的尾部持锁回放，避免长时间阻塞写入
+     *
+     * @param applier 把一批事件写入 Redis，失败时抛出异常，下次从段头记录的位置继续
+     * @return 回放的事件数
+     */
+    public long replay(Consumer<List<Entry>> applier) throws IOException {
+        long replayed = 0;
+        Segment current;
+        lock.lock();
+        try {
+            current = active;
+        } finally {
+            lock.unlock();
+        }
+        for (Path path : listSegments()) {
+            if (current != null && path.equals(current.path)) {
+                continue;
+            }
+            try (Segment segment = Segment.open(path)) {
+                replayed += replay(segment, segment.capacity(), applier);
+            }
+            Files.delete(path);
+        }
+        if (current != null) {
+            replayed += replay(current, current.writePosition, applier);
+        }
+
+        lock.lock();
+        try {
+            // 回放期间可能滚动出新的段
+            for (Path path : listSegments()) {
+                if (active != null && path.equals(active.path)) {
+                    continue;
+                }
+                try (Segment segment = Segment.open(path)) {
+                    replayed += replay(segment, segment.capacity(), applier);
+                }
+                Files.delete(path);
+            }
+            if (active != null) {
+                replayed += replay(active, active.writePosition, applier);
+                active.close();
+                Files.delete(active.path);
+                active = null;
+            }
+            redisCircuitBreaker.close();
+        } finally {
+            lock.unlock();
+        }
+        return replayed;
+    }
+
+    /**
+     * 定期把活动段刷到磁盘；内存映射写入在进程崩溃时由操作系统保留，这里防止机器宕机丢失
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void force() {
+        lock.lock();
+        try {
+            if (active != null) {
+                active.buffer.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        lock.lock();
+        try {
+            if (active != null) {
+                active.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long replay(Segment segment, int limit, Consumer<List<Entry>> applier) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = (int) Math.max(buffer.getLong(0), HEADER_SIZE);
+        long replayed = 0;
+        List<Entry> batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+        while (position + RECORD_SIZE <= limit) {
+            Entry entry = read(buffer, position);
+            if (entry == null) {
+                break;
+            }
+            batch.add(entry);
+            position += RECORD_SIZE;
+            if (batch.size() >= REPLAY_BATCH_SIZE) {
+                applier.accept(batch);
+                segment.buffer.putLong(0, position);
+                replayed += batch.size();
+                batch = new ArrayList<>(REPLAY_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            applier.accept(batch);
+            segment.buffer.putLong(0, position);
+            replayed += batch.size();
+        }
+        return replayed;
+    }
+
+    private Entry read(ByteBuffer buffer, int position) {
+        if (buffer.getInt(position) != MAGIC) {
+            return null;
+        }
+        long userId = buffer.getLong(position + Integer.BYTES);
+        long blogId = buffer.getLong(position + Integer.BYTES + Long.BYTES);
+        int type = buffer.getInt(position + Integer.BYTES + Long.BYTES * 2);
+        int crc = buffer.getInt(position + Integer.BYTES * 2 + Long.BYTES * 2);
+        if (crc != checksum(userId, blogId, type)) {
+            log.warn("点赞本地日志记录校验失败，停止回放该段，position = {}", position);
+            return null;
+        }
+        return new Entry(userId, blogId, type);
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            active.close();
+        }
+        Path path = dir.resolve("%020d%s".formatted(nextSequence++, SEGMENT_SUFFIX));
+        active = Segment.create(path, thumbProperties.getWal().getSegmentBytes());
+        log.info("创建点赞本地日志段：{}", path);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+    }
+
+    private static long sequenceOf(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(long userId, long blogId, int type) {
+        CRC32 crc32 = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES);
+        buffer.putLong(userId).putLong(blogId).putInt(type).flip();
+        crc32.update(buffer);
+        return (int) crc32.getValue();
+    }
+
+    /**
+     * 一条点赞事件
+     */
+    public record Entry(long userId, long blogId, int type) {
+    }
+
+    private static class Segment implements AutoCloseable {
+
+        final Path path;
+
+        final FileChannel channel;
+
+        final MappedByteBuffer buffer;
+
+        /**
+         * 已写入的位置，回放线程读取到此为止
+         */
+        volatile int writePosition = HEADER_SIZE;
+
+        private Segment(Path path, FileChannel channel, int size) throws IOException {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        static Segment create(Path path, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, channel, size);
+        }
+
+        static Segment open(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(path, channel, (int) channel.size());
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        boolean hasRemaining() {
+            return writePosition + RECORD_SIZE <= capacity();
+        }
+
+        void append(long userId, long blogId, int type) {
+            int position = writePosition;
+            // magic 最后写入，回放时不会读到写了一半的记录
+            buffer.putLong(position + Integer.BYTES, userId);
+            buffer.putLong(position + Integer.BYTES + Long.BYTES, blogId);
+            buffer.putInt(position + Integer.BYTES + Long.BYTES * 2, type);
+            buffer.putInt(position + Integer.BYTES * 2 + Long.BYTES * 2, checksum(userId, blogId, type));
+            buffer.putInt(position, MAGIC);
+            writePosition = position + RECORD_SIZE;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭点赞本地日志段失败：{}", path, e);
+            }
+        }
+    }
+}
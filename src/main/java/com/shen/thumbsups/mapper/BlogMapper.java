@@ -1,9 +1,13 @@
 package com.shen.thumbsups.mapper;
 
 import com.shen.thumbsups.domain.Blog;
+import com.shen.thumbsups.domain.dto.blog.BlogThumbCountCheck;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -16,6 +20,24 @@ public interface BlogMapper extends BaseMapper<Blog> {
 
     void batchUpdateThumbsCount(@Param("countMap")Map<Long, Long> countMap);
 
+    /**
+     * 按ID顺序（键集分页）校对博客点赞数
+     *
+     * @param afterId 上一页最后的博客ID
+     * @param limit   每页博客数
+     */
+    List<BlogThumbCountCheck> listThumbCountChecks(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 校对指定博客的点赞数
+     */
+    List<BlogThumbCountCheck> listThumbCountChecksByIds(@Param("blogIds") Collection<Long> blogIds);
+
+    /**
+     * 流式读取全部博客（不含内容），按 (createTime, id) 降序；需在事务中遍历
+     */
+    Cursor<Blog> streamBlogs();
+
 }
 
 
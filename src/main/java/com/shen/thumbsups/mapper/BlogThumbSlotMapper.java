@@ -0,0 +1,29 @@
+package com.shen.thumbsups.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+* @description 针对表【blog_thumb_slot】的数据库操作Mapper（热点博客分片点赞计数）
+*/
+public interface BlogThumbSlotMapper {
+
+    /**
+     * 累加指定计数槽，不存在时创建
+     */
+    int addToSlot(@Param("blogId") long blogId, @Param("slot") int slot, @Param("delta") long delta);
+
+    /**
+     * 锁定并汇总博客所有计数槽
+     */
+    long sumForUpdate(@Param("blogId") long blogId);
+
+    int deleteByBlogId(@Param("blogId") long blogId);
+
+    /**
+     * 存在未合并计数槽的博客
+     */
+    List<Long> listBlogIds(@Param("limit") int limit);
+
+}
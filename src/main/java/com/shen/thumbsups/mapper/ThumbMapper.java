@@ -2,6 +2,9 @@ package com.shen.thumbsups.mapper;
 
 import com.shen.thumbsups.domain.Thumb;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
 
 /**
 * @author 76453
@@ -11,6 +14,31 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 */
 public interface ThumbMapper extends BaseMapper<Thumb> {
 
+    /**
+     * 批量写入同一博客的点赞记录，已存在的记录忽略（依赖 uk_userId_blogId）
+     *
+     * @return 实际新增的记录数
+     */
+    int insertIgnoreBatch(@Param("blogId") Long blogId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 批量删除同一博客的点赞记录
+     *
+     * @return 实际删除的记录数
+     */
+    int deleteByBlogIdAndUserIds(@Param("blogId") Long blogId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 多行写入点赞记录（可跨博客），已存在的记录不变（依赖 uk_userId_blogId）
+     */
+    int insertBatchOnDuplicate(@Param("thumbs") Collection<Thumb> thumbs);
+
+    /**
+     * 按 (userId, blogId) 批量删除点赞记录（可跨博客），走 uk_userId_blogId 索引
+     *
+     * @return 实际删除的记录数
+     */
+    int deleteBatchByUserIdAndBlogId(@Param("thumbs") Collection<Thumb> thumbs);
 }
 
 
@@ -0,0 +1,12 @@
+package com.shen.thumbsups.mapper;
+
+import com.shen.thumbsups.domain.ThumbOutbox;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+* @description 针对表【thumb_outbox】的数据库操作Mapper
+* @Entity generator.domain.ThumbOutbox
+*/
+public interface ThumbOutboxMapper extends BaseMapper<ThumbOutbox> {
+
+}
@@ -0,0 +1,24 @@
+package com.shen.thumbsups.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+
+/**
+* @description 针对表【thumb_sync_checkpoint】的数据库操作Mapper（临时点赞分块的落库记录）
+*/
+public interface ThumbSyncCheckpointMapper {
+
+    /**
+     * 记录分块已落库，与分块的写库在同一事务中执行
+     *
+     * @return 1 首次落库；0 分块此前已落库（重试），本次应跳过写库
+     */
+    int insertIgnore(@Param("chunkId") long chunkId, @Param("tempThumbKey") String tempThumbKey);
+
+    /**
+     * 清理早于指定时间的记录
+     */
+    int deleteBefore(@Param("time") Date time);
+
+}
@@ -0,0 +1,48 @@
+package com.shen.thumbsups.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+* @description 针对表【thumb_sync_lease】的数据库操作Mapper（临时点赞分片的同步租约）
+*/
+public interface ThumbSyncLeaseMapper {
+
+    /**
+     * 初始化分片的租约记录，已存在时忽略
+     */
+    int initShard(@Param("shard") int shard);
+
+    /**
+     * 已过期（无人持有）的分片
+     */
+    List<Integer> listExpiredShards();
+
+    /**
+     * 抢占已过期的租约，成功时栅栏令牌加一
+     */
+    int acquire(@Param("shard") int shard, @Param("owner") String owner, @Param("leaseSeconds") int leaseSeconds);
+
+    /**
+     * 查询本节点持有且未过期的租约的栅栏令牌
+     */
+    Long selectFence(@Param("shard") int shard, @Param("owner") String owner);
+
+    /**
+     * 续约，令牌不变
+     */
+    int renew(@Param("shard") int shard, @Param("owner") String owner, @Param("fence") long fence,
+              @Param("leaseSeconds") int leaseSeconds);
+
+    /**
+     * 释放租约，其他节点可立即抢占
+     */
+    int release(@Param("shard") int shard, @Param("owner") String owner, @Param("fence") long fence);
+
+    /**
+     * 在写库事务中校验并共享锁定租约：返回 0 说明租约已被其他节点接管，事务应回滚
+     */
+    int lockValid(@Param("shard") int shard, @Param("owner") String owner, @Param("fence") long fence);
+
+}
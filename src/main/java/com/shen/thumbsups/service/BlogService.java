@@ -1,10 +1,17 @@
 package com.shen.thumbsups.service;
 
 import com.shen.thumbsups.domain.Blog;
+import com.shen.thumbsups.domain.User;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.shen.thumbsups.domain.dto.blog.BlogCursorQueryRequest;
+import com.shen.thumbsups.domain.dto.blog.BlogThumbVelocityRequest;
+import com.shen.thumbsups.domain.vo.BlogThumbVelocityVO;
 import com.shen.thumbsups.domain.vo.BlogVO;
+import com.shen.thumbsups.domain.vo.CursorPageVO;
+import com.shen.thumbsups.domain.vo.TrendingBlogVO;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -19,4 +26,29 @@ public interface BlogService extends IService<Blog> {
 
     List<BlogVO> getBlogVOList(List<Blog> blogs, HttpServletRequest request);
 
+    /**
+     * 游标分页查询博客列表（不含内容）
+     */
+    CursorPageVO<BlogVO> listBlogVOByCursor(BlogCursorQueryRequest blogCursorQueryRequest, HttpServletRequest request);
+
+    /**
+     * 以 JSON 数组流式写出全部博客（不含内容），内存占用与博客数量无关
+     *
+     * @param loginUser    登录用户，未登录时为 null
+     * @param outputStream 响应输出流
+     */
+    void writeBlogVOStream(User loginUser, OutputStream outputStream);
+
+    /**
+     * 近期点赞最多的博客（内存榜单）
+     *
+     * @param limit 返回条数
+     */
+    List<TrendingBlogVO> listTrendingBlogs(int limit);
+
+    /**
+     * 博客在时间区间内每分钟的点赞数（内存与 Redis 快照，不查询数据库）
+     */
+    BlogThumbVelocityVO getThumbVelocity(BlogThumbVelocityRequest blogThumbVelocityRequest);
+
 }
@@ -2,9 +2,15 @@ package com.shen.thumbsups.service;
 
 import com.shen.thumbsups.domain.Thumb;
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.shen.thumbsups.domain.dto.thumb.BatchThumbRequest;
 import com.shen.thumbsups.domain.dto.thumb.DoThumbRequest;
+import com.shen.thumbsups.domain.vo.ThumbBatchResultVO;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
 * @author 76453
 * @description 针对表【thumb】的数据库操作Service
@@ -28,6 +34,14 @@ public interface ThumbService extends IService<Thumb> {
      */
     Boolean undoThumb(DoThumbRequest doThumbRequest, HttpServletRequest request);
 
+    /**
+     * 批量点赞 / 取消点赞
+     * @param batchThumbRequest 操作列表
+     * @param request           获取登录用户
+     * @return                  每个操作的执行结果（与请求顺序一致）
+     */
+    List<ThumbBatchResultVO> batchThumb(BatchThumbRequest batchThumbRequest, HttpServletRequest request);
+
 
     /**
      * 是否点赞
@@ -37,4 +51,12 @@ public interface ThumbService extends IService<Thumb> {
      */
     Boolean hasThumb(Long userId, Long blogId);
 
+    /**
+     * 批量查询是否点赞
+     * @param userId  用户ID
+     * @param blogIds 博客ID
+     * @return        blogId -> 是否点赞
+     */
+    Map<Long, Boolean> hasThumbBatch(long userId, Collection<Long> blogIds);
+
 }
@@ -1,26 +1,55 @@
 package com.shen.thumbsups.service.impl;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.ObjUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shen.thumbsups.common.ErrorCode;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.CommonConstant;
 import com.shen.thumbsups.constant.ThumbConstant;
 import com.shen.thumbsups.domain.Blog;
 import com.shen.thumbsups.domain.User;
+import com.shen.thumbsups.domain.dto.blog.BlogCursorQueryRequest;
+import com.shen.thumbsups.domain.dto.blog.BlogThumbVelocityRequest;
+import com.shen.thumbsups.domain.vo.BlogThumbVelocityVO;
 import com.shen.thumbsups.domain.vo.BlogVO;
+import com.shen.thumbsups.domain.vo.CursorPageVO;
+import com.shen.thumbsups.domain.vo.TrendingBlogVO;
+import com.shen.thumbsups.exception.ThrowUtils;
+import com.shen.thumbsups.manager.BlogDetailCacheManager;
+import com.shen.thumbsups.manager.BlogThumbVelocityManager;
+import com.shen.thumbsups.manager.BlogTrendingManager;
+import com.shen.thumbsups.manager.LiveThumbCountManager;
+import com.shen.thumbsups.manager.ThumbMembershipManager;
 import com.shen.thumbsups.mapper.BlogMapper;
 import com.shen.thumbsups.service.BlogService;
 import com.shen.thumbsups.service.ThumbService;
 import com.shen.thumbsups.service.UserService;
 import com.shen.thumbsups.util.RedisKeyUtil;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -37,54 +66,257 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog>
 
     @Resource
     @Lazy
-    private ThumbService  thumbService;
+    private ThumbService thumbService;
 
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private ThumbMembershipManager thumbMembershipManager;
 
+    @Resource
+    private LiveThumbCountManager liveThumbCountManager;
+
+    @Resource
+    private BlogDetailCacheManager blogDetailCacheManager;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private BlogTrendingManager blogTrendingManager;
+
+    @Resource
+    private BlogThumbVelocityManager blogThumbVelocityManager;
+
+    @Resource
+    private ThumbProperties thumbProperties;
+
+    /**
+     * 游标分页每页最多条数
+     */
+    private static final int MAX_CURSOR_PAGE_SIZE = 50;
+
+    /**
+     * 流式写出时每批查询点赞状态的博客数
+     */
+    private static final int STREAM_BATCH_SIZE = 200;
+
+    /**
+     * 每分钟点赞数查询未指定开始时间时的默认分钟数
+     */
+    private static final int DEFAULT_VELOCITY_MINUTES = 60;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 新事务（另一个连接）：流式游标打开期间，该连接不能再执行其他查询
+     */
+    private TransactionTemplate separateConnectionTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @PostConstruct
+    public void init() {
+        separateConnectionTemplate = new TransactionTemplate(transactionManager);
+        separateConnectionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        separateConnectionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 博客详情：本地缓存 / Redis 缓存 / 数据库三级读取，缓存命中时只有一次 Redis 往返（pipeline）：
+     * 详情（本地命中时只取点赞数）、实时点赞增量与登录用户是否点赞
+     */
     @Override
     public BlogVO getBlogVOById(long blogId, HttpServletRequest request) {
-        Blog blog = this.getById(blogId);
-        User user = userService.getLoginUser(request);
-        return this.getBlogVO(blog, user);
+        User loginUser = userService.getLoginUser(request);
+        Blog localBlog = blogDetailCacheManager.getLocal(blogId);
+        RedisSerializer<String> stringSerializer = stringRedisTemplate.getStringSerializer();
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] detailKey = stringSerializer.serialize(RedisKeyUtil.getBlogDetailKey(blogId));
+            if (localBlog == null) {
+                connection.hashCommands().hGetAll(detailKey);
+            } else {
+                connection.hashCommands().hGet(detailKey, stringSerializer.serialize(BlogDetailCacheManager.FIELD_THUMB_COUNT));
+            }
+            connection.stringCommands().get(stringSerializer.serialize(RedisKeyUtil.getBlogThumbCountKey(blogId)));
+            if (loginUser != null) {
+                thumbMembershipManager.hasThumb(connection, loginUser.getId(), blogId);
+            }
+            return null;
+        });
+
+        BlogVO blogVO = null;
+        if (localBlog == null) {
+            Blog blog = blogDetailCacheManager.decode(blogId, (Map<?, ?>) results.get(0));
+            blogVO = BlogVO.objToVo(blog);
+            if (blog != null) {
+                blogDetailCacheManager.admit(blog);
+            }
+        } else if (results.get(0) != null) {
+            // 本地缓存不含最新点赞数，以 Redis 缓存为准
+            blogVO = BlogVO.objToVo(localBlog);
+            blogVO.setThumbCount(Integer.valueOf(results.get(0).toString()));
+            blogDetailCacheManager.admit(localBlog);
+        }
+        if (blogVO == null) {
+            Blog blog = this.getById(blogId);
+            ThrowUtils.throwIf(blog == null, ErrorCode.NOT_FOUND_ERROR, "文章不存在");
+            blogDetailCacheManager.put(blog);
+            blogDetailCacheManager.admit(blog);
+            blogVO = BlogVO.objToVo(blog);
+        }
+
+        long pending = liveThumbCountManager.toPending(blogId, results.get(1));
+        if (pending != 0) {
+            overlayThumbCount(blogVO, Map.of(blogId, pending));
+        }
+        if (loginUser != null) {
+            boolean hasThumb = Boolean.TRUE.equals(results.get(2));
+            // Redis 中没有点赞记录时，发布超过一个月的博客回查数据库
+            if (!hasThumb && isDbFallback(blogVO.getCreateTime())) {
+                hasThumb = thumbService.hasThumbBatch(loginUser.getId(), List.of(blogId)).getOrDefault(blogId, false);
+            }
+            blogVO.setHasThumb(hasThumb);
+        }
+        return blogVO;
+    }
+
+    private boolean isDbFallback(Date createTime) {
+        return createTime == null
+                || System.currentTimeMillis() - createTime.getTime() > TimeUnit.DAYS.toMillis(ThumbConstant.THUMB_DB_FALLBACK_DAYS);
     }
 
     @Override
     public List<BlogVO> getBlogVOList(List<Blog> blogs, HttpServletRequest request) {
-        User loginUser = userService.getLoginUser(request);
+        return this.getBlogVOList(blogs, userService.getLoginUser(request));
+    }
+
+    private List<BlogVO> getBlogVOList(List<Blog> blogs, User loginUser) {
         Map<Long, Boolean> blogIdHasThumbMap = new HashMap<>();
         if (ObjUtil.isNotEmpty(loginUser)) {
-            List<Object> blogIdList = blogs.stream().map(blog -> blog.getId().toString()).collect(Collectors.toList());
-            // 获取点赞
-            List<Object> thumbs = redisTemplate.opsForHash().multiGet(RedisKeyUtil.getUserThumbKey(loginUser.getId()), blogIdList);
-            for (int i = 0; i < thumbs.size(); i++) {
-                if (thumbs.get(i) == null) {
-                    continue;
-                }
-                blogIdHasThumbMap.put(Long.parseLong(blogIdList.get(i).toString()), true);
-            }
+            List<Long> blogIdList = blogs.stream().map(Blog::getId).collect(Collectors.toList());
+            // 批量获取点赞（本地缓存 / Redis / 数据库分层查询）
+            blogIdHasThumbMap.putAll(thumbService.hasThumbBatch(loginUser.getId(), blogIdList));
         }
+        // 叠加尚未同步到数据库的实时点赞增量（一次 pipeline）
+        Map<Long, Long> pendingMap = liveThumbCountManager.getPending(blogs.stream().map(Blog::getId).toList());
         return blogs.stream().map(blog -> {
-            BlogVO blogVO = BeanUtil.copyProperties(blog, BlogVO.class);
+            BlogVO blogVO = BlogVO.objToVo(blog);
             blogVO.setHasThumb(blogIdHasThumbMap.getOrDefault(blog.getId(), false));
+            overlayThumbCount(blogVO, pendingMap);
             return blogVO;
         }).collect(Collectors.toList());
     }
 
-    private BlogVO getBlogVO(Blog blog, User loginUser) {
-        BlogVO blogVO = new BlogVO();
-        BeanUtil.copyProperties(blog, blogVO);
-        if (loginUser == null) {
-            return blogVO;
+    @Override
+    public CursorPageVO<BlogVO> listBlogVOByCursor(BlogCursorQueryRequest blogCursorQueryRequest, HttpServletRequest request) {
+        int pageSize = blogCursorQueryRequest.getPageSize();
+        ThrowUtils.throwIf(pageSize <= 0 || pageSize > MAX_CURSOR_PAGE_SIZE, ErrorCode.PARAMS_ERROR, "每页条数应在 1 - " + MAX_CURSOR_PAGE_SIZE + " 之间");
+        Long cursorCreateTime = blogCursorQueryRequest.getCursorCreateTime();
+        Long cursorId = blogCursorQueryRequest.getCursorId();
+        ThrowUtils.throwIf((cursorCreateTime == null) != (cursorId == null), ErrorCode.PARAMS_ERROR, "游标不完整");
+        boolean asc = CommonConstant.SORT_ORDER_ASC.equals(blogCursorQueryRequest.getSortOrder());
+
+        // 列表不查询内容；多取一条判断是否还有下一页
+        LambdaQueryWrapper<Blog> queryWrapper = new LambdaQueryWrapper<Blog>()
+                .select(Blog::getId, Blog::getUserId, Blog::getTitle, Blog::getCoverImg, Blog::getThumbCount, Blog::getCreateTime);
+        if (cursorCreateTime != null) {
+            Date createTime = new Date(cursorCreateTime);
+            if (asc) {
+                queryWrapper.and(wrapper -> wrapper.gt(Blog::getCreateTime, createTime)
+                        .or(sameTime -> sameTime.eq(Blog::getCreateTime, createTime).gt(Blog::getId, cursorId)));
+            } else {
+                queryWrapper.and(wrapper -> wrapper.lt(Blog::getCreateTime, createTime)
+                        .or(sameTime -> sameTime.eq(Blog::getCreateTime, createTime).lt(Blog::getId, cursorId)));
+            }
         }
+        queryWrapper.orderBy(true, asc, Blog::getCreateTime, Blog::getId)
+                .last("limit " + (pageSize + 1));
+        List<Blog> blogList = this.list(queryWrapper);
 
-        Boolean exist = thumbService.hasThumb(loginUser.getId(), blog.getId());
-        blogVO.setHasThumb(exist);
+        boolean hasMore = blogList.size() > pageSize;
+        if (hasMore) {
+            blogList = blogList.subList(0, pageSize);
+        }
+        CursorPageVO<BlogVO> cursorPageVO = new CursorPageVO<>();
+        cursorPageVO.setRecords(this.getBlogVOList(blogList, request));
+        cursorPageVO.setHasMore(hasMore);
+        if (hasMore) {
+            Blog last = blogList.get(blogList.size() - 1);
+            cursorPageVO.setNextCreateTime(last.getCreateTime().getTime());
+            cursorPageVO.setNextId(last.getId());
+        }
+        return cursorPageVO;
+    }
 
-        return blogVO;
+    @Override
+    public void writeBlogVOStream(User loginUser, OutputStream outputStream) {
+        // 游标在事务（连接）关闭前有效
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Cursor<Blog> cursor = this.baseMapper.streamBlogs();
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                List<Blog> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+                for (Blog blog : cursor) {
+                    batch.add(blog);
+                    if (batch.size() >= STREAM_BATCH_SIZE) {
+                        writeBlogVOBatch(generator, batch, loginUser);
+                        batch.clear();
+                    }
+                }
+                writeBlogVOBatch(generator, batch, loginUser);
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
-}
 
+    @Override
+    public List<TrendingBlogVO> listTrendingBlogs(int limit) {
+        int maxLimit = thumbProperties.getTrending().getTopK();
+        ThrowUtils.throwIf(limit <= 0 || limit > maxLimit, ErrorCode.PARAMS_ERROR, "条数应在 1 - " + maxLimit + " 之间");
+        return blogTrendingManager.list(limit);
+    }
 
+    @Override
+    public BlogThumbVelocityVO getThumbVelocity(BlogThumbVelocityRequest blogThumbVelocityRequest) {
+        ThrowUtils.throwIf(blogThumbVelocityRequest == null || blogThumbVelocityRequest.getBlogId() == null, ErrorCode.PARAMS_ERROR, "参数错误");
+        long nowMinute = BlogThumbVelocityManager.currentMinute();
+        Long endTime = blogThumbVelocityRequest.getEndTime();
+        Long startTime = blogThumbVelocityRequest.getStartTime();
+        long toMinute = endTime == null ? nowMinute : Math.min(TimeUnit.MILLISECONDS.toMinutes(endTime), nowMinute);
+        long fromMinute = startTime == null ? toMinute - DEFAULT_VELOCITY_MINUTES + 1 : TimeUnit.MILLISECONDS.toMinutes(startTime);
+        int retentionMinutes = thumbProperties.getVelocity().getRetentionMinutes();
+        ThrowUtils.throwIf(fromMinute > toMinute || fromMinute <= nowMinute - retentionMinutes,
+                ErrorCode.PARAMS_ERROR, "时间区间应在最近 " + retentionMinutes + " 分钟内");
+        return blogThumbVelocityManager.query(blogThumbVelocityRequest.getBlogId(), fromMinute, toMinute);
+    }
 
+    /**
+     * 一批博客的点赞状态与实时点赞数各一次 Redis 往返，写出后刷新到客户端
+     * 点赞状态可能回查数据库，在新事务中执行，挂起游标所在的事务，使用另一个连接
+     */
+    private void writeBlogVOBatch(JsonGenerator generator, List<Blog> batch, User loginUser) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<BlogVO> blogVOList = separateConnectionTemplate.execute(status -> this.getBlogVOList(batch, loginUser));
+        for (BlogVO blogVO : blogVOList) {
+            generator.writeObject(blogVO);
+        }
+        generator.flush();
+    }
 
+    private void overlayThumbCount(BlogVO blogVO, Map<Long, Long> pendingMap) {
+        Long pending = pendingMap.get(blogVO.getId());
+        if (pending == null || blogVO.getThumbCount() == null) {
+            return;
+        }
+        blogVO.setThumbCount((int) (blogVO.getThumbCount() + pending));
+    }
+}
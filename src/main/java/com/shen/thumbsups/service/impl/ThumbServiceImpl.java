@@ -1,14 +1,24 @@
 package com.shen.thumbsups.service.impl;
 
+import cn.hutool.core.collection.CollUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.shen.thumbsups.common.ErrorCode;
 import com.shen.thumbsups.constant.ThumbConstant;
 import com.shen.thumbsups.domain.Blog;
 import com.shen.thumbsups.domain.Thumb;
+import com.shen.thumbsups.domain.ThumbOutbox;
 import com.shen.thumbsups.domain.User;
+import com.shen.thumbsups.domain.dto.thumb.BatchThumbRequest;
 import com.shen.thumbsups.domain.dto.thumb.DoThumbRequest;
+import com.shen.thumbsups.domain.enums.ThumbTypeEnum;
+import com.shen.thumbsups.domain.vo.ThumbBatchResultVO;
 import com.shen.thumbsups.exception.BusinessException;
+import com.shen.thumbsups.exception.ThrowUtils;
+import com.shen.thumbsups.manager.BlogThumbVelocityManager;
+import com.shen.thumbsups.manager.BlogTrendingManager;
 import com.shen.thumbsups.manager.CacheManager;
+import com.shen.thumbsups.manager.ThumbCountManager;
+import com.shen.thumbsups.manager.ThumbOutboxRelay;
 import com.shen.thumbsups.mapper.ThumbMapper;
 import com.shen.thumbsups.service.BlogService;
 import com.shen.thumbsups.service.ThumbService;
@@ -16,7 +26,6 @@ import com.shen.thumbsups.service.UserService;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
 
@@ -24,7 +33,15 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author shenguang
@@ -46,10 +63,19 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb>
     private TransactionTemplate transactionTemplate;
 
     @Resource
-    private RedisTemplate<String, Object> redisTemplate;
+    private CacheManager cacheManager;
 
     @Resource
-    private CacheManager cacheManager;
+    private ThumbOutboxRelay thumbOutboxRelay;
+
+    @Resource
+    private ThumbCountManager thumbCountManager;
+
+    @Resource
+    private BlogTrendingManager blogTrendingManager;
+
+    @Resource
+    private BlogThumbVelocityManager blogThumbVelocityManager;
 
     @Override
     public Boolean doThumb(DoThumbRequest doThumbRequest, HttpServletRequest request) {
@@ -57,19 +83,21 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb>
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
         User loginUser = userService.getLoginUser(request);
+        Boolean thumbed;
         // 加锁
         synchronized (loginUser.getId().toString().intern()) {
-            return transactionTemplate.execute(status -> {
+            thumbed = transactionTemplate.execute(status -> {
                 Long blogId = doThumbRequest.getBlogId();
-                // 超过一个月查询数据库，否则查询redis
-                boolean exists = this.hasThumb(loginUser.getId(), blogId);
+                // 有未投递的发件箱记录时 Redis 尚未更新，查询数据库；否则超过一个月查询数据库，其余查询redis
+                boolean exists = thumbOutboxRelay.hasPending(loginUser.getId(), blogId)
+                        ? this.getThumbId(loginUser.getId(), blogId) != null
+                        : this.hasThumb(loginUser.getId(), blogId);
                 if (exists) {
                     throw new BusinessException(ErrorCode.OPERATION_ERROR, "用户已点赞");
                 }
-                boolean update = blogService.lambdaUpdate()
-                        .eq(Blog::getId, blogId)
-                        .setSql("thumbCount = thumbCount + 1")
-                        .update();
+                // 计入热 key 探测器；热点博客写入分片计数槽，其余直接更新 blog 行
+                thumbCountManager.recordThumb(blogId);
+                boolean update = thumbCountManager.incr(blogId, 1);
                 Thumb thumb = new Thumb();
                 thumb.setUserId(loginUser.getId());
                 thumb.setBlogId(blogId);
@@ -77,15 +105,18 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb>
                 boolean success = update && this.save(thumb);
                 if (success) {
                     // TODO 设置过期时间（一个月内发布的文章为热点数据，进行存入redis）
-                    String hashKey = ThumbConstant.USER_THUMB_KEY_PREFIX + loginUser.getId().toString();
-                    String fieldKey = blogId.toString();
-                    Long realThumbId = thumb.getId();
-                    redisTemplate.opsForHash().put(hashKey, fieldKey, realThumbId);
-                    cacheManager.putIfPresent(hashKey, fieldKey, realThumbId);
+                    // 写入发件箱，事务提交后再同步到 Redis 和本地缓存
+                    thumbOutboxRelay.record(buildOutbox(loginUser.getId(), blogId, thumb.getId(), ThumbTypeEnum.INCR));
                 }
                 return success;
             });
         }
+        // 事务提交后计入热门博客与每分钟点赞数
+        if (Boolean.TRUE.equals(thumbed)) {
+            blogTrendingManager.record(doThumbRequest.getBlogId());
+            blogThumbVelocityManager.record(doThumbRequest.getBlogId());
+        }
+        return thumbed;
     }
 
     @Override
@@ -94,30 +125,126 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb>
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
         }
         User loginUser = userService.getLoginUser(request);
+        Boolean undone;
         // 加锁
         synchronized (loginUser.getId().toString().intern()) {
-            return transactionTemplate.execute(status -> {
+            undone = transactionTemplate.execute(status -> {
                 Long blogId = doThumbRequest.getBlogId();
-                Object thumbIdObj = cacheManager.get(ThumbConstant.USER_THUMB_KEY_PREFIX + loginUser.getId(), blogId.toString());
+                // 有未投递的发件箱记录时 Redis 尚未更新，以数据库中的点赞记录为准
+                Object thumbIdObj = thumbOutboxRelay.hasPending(loginUser.getId(), blogId)
+                        ? this.getThumbId(loginUser.getId(), blogId)
+                        : cacheManager.get(ThumbConstant.USER_THUMB_KEY_PREFIX + loginUser.getId(), blogId.toString());
                 if (thumbIdObj == null || thumbIdObj.equals(ThumbConstant.UN_THUMB_CONSTANT)) {
                     throw new RuntimeException("用户未点赞");
                 }
-                boolean update = blogService.lambdaUpdate()
-                        .eq(Blog::getId, blogId)
-                        .setSql("thumbCount = thumbCount - 1")
-                        .update();
+                // 计入热 key 探测器；热点博客写入分片计数槽，其余直接更新 blog 行
+                thumbCountManager.recordThumb(blogId);
+                boolean update = thumbCountManager.incr(blogId, -1);
                 // 更新成功后在执行
                 boolean success = update && this.removeById((Long)thumbIdObj);
-                // 点赞记录从 Redis 删除
+                // 点赞记录在事务提交后从 Redis 删除
                 if (success) {
-                    String hashKey = ThumbConstant.USER_THUMB_KEY_PREFIX + loginUser.getId();
-                    String fieldKey = blogId.toString();
-                    redisTemplate.opsForHash().delete(hashKey, fieldKey);
-                    cacheManager.putIfPresent(hashKey, fieldKey, ThumbConstant.UN_THUMB_CONSTANT);
+                    thumbOutboxRelay.record(buildOutbox(loginUser.getId(), blogId, (Long) thumbIdObj, ThumbTypeEnum.DECR));
                 }
                 return success;
             });
         }
+        // 事务提交后从热门博客的点赞数中扣除
+        if (Boolean.TRUE.equals(undone)) {
+            blogTrendingManager.recordUndo(doThumbRequest.getBlogId());
+        }
+        return undone;
+    }
+
+    @Override
+    public List<ThumbBatchResultVO> batchThumb(BatchThumbRequest batchThumbRequest, HttpServletRequest request) {
+        if (batchThumbRequest == null || CollUtil.isEmpty(batchThumbRequest.getOperations())) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
+        }
+        List<BatchThumbRequest.ThumbOperation> operations = batchThumbRequest.getOperations();
+        ThrowUtils.throwIf(operations.size() > ThumbConstant.BATCH_THUMB_MAX_SIZE, ErrorCode.PARAMS_ERROR, "批量操作数量过多");
+        // 数据库模式下每个操作各自一个事务，逐个执行并记录结果
+        List<ThumbBatchResultVO> results = new ArrayList<>(operations.size());
+        for (BatchThumbRequest.ThumbOperation operation : operations) {
+            ThumbBatchResultVO result = new ThumbBatchResultVO();
+            result.setBlogId(operation.getBlogId());
+            result.setType(operation.getType());
+            DoThumbRequest doThumbRequest = new DoThumbRequest();
+            doThumbRequest.setBlogId(operation.getBlogId());
+            try {
+                if (Objects.equals(operation.getType(), ThumbTypeEnum.INCR.getValue())) {
+                    result.setSuccess(this.doThumb(doThumbRequest, request));
+                } else if (Objects.equals(operation.getType(), ThumbTypeEnum.DECR.getValue())) {
+                    result.setSuccess(this.undoThumb(doThumbRequest, request));
+                } else {
+                    result.setSuccess(false);
+                    result.setMessage("操作类型错误");
+                }
+            } catch (RuntimeException e) {
+                result.setSuccess(false);
+                result.setMessage(e.getMessage());
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * 数据库中该用户对该博客的点赞记录ID，未点赞时为 null
+     */
+    private Long getThumbId(Long userId, Long blogId) {
+        Thumb thumb = this.lambdaQuery()
+                .select(Thumb::getId)
+                .eq(Thumb::getBlogId, blogId)
+                .eq(Thumb::getUserId, userId)
+                .one();
+        return thumb == null ? null : thumb.getId();
+    }
+
+    private ThumbOutbox buildOutbox(Long userId, Long blogId, Long thumbId, ThumbTypeEnum type) {
+        ThumbOutbox outbox = new ThumbOutbox();
+        outbox.setUserId(userId);
+        outbox.setBlogId(blogId);
+        outbox.setThumbId(thumbId);
+        outbox.setType(type.getValue());
+        return outbox;
+    }
+
+    /**
+     * 批量查询是否点赞：
+     * 1. 热数据：本地缓存，未命中的一次 HMGET（值为点赞记录ID，取消点赞为 0）
+     * 2. 冷数据：缓存中没有记录的博客（超过一个月或从未点赞）一次 IN 查询数据库
+     */
+    @Override
+    public Map<Long, Boolean> hasThumbBatch(long userId, Collection<Long> blogIds) {
+        Map<Long, Boolean> result = new HashMap<>();
+        if (CollUtil.isEmpty(blogIds)) {
+            return result;
+        }
+        List<String> fields = blogIds.stream().distinct().map(String::valueOf).toList();
+        Map<String, Object> cachedMap = cacheManager.getAll(ThumbConstant.USER_THUMB_KEY_PREFIX + userId, fields);
+        List<Long> coldBlogIds = new ArrayList<>();
+        for (String field : fields) {
+            Object value = cachedMap.get(field);
+            if (value == null) {
+                coldBlogIds.add(Long.valueOf(field));
+            } else {
+                result.put(Long.valueOf(field), !ThumbConstant.UN_THUMB_CONSTANT.equals(Long.valueOf(value.toString())));
+            }
+        }
+        if (coldBlogIds.isEmpty()) {
+            return result;
+        }
+        Set<Long> thumbedBlogIds = this.lambdaQuery()
+                .select(Thumb::getBlogId)
+                .eq(Thumb::getUserId, userId)
+                .in(Thumb::getBlogId, coldBlogIds)
+                .list()
+                .stream()
+                .map(Thumb::getBlogId)
+                .collect(Collectors.toSet());
+        coldBlogIds.forEach(blogId -> result.put(blogId, thumbedBlogIds.contains(blogId)));
+        return result;
     }
 
     @Override
@@ -135,7 +262,7 @@ public class ThumbServiceImpl extends ServiceImpl<ThumbMapper, Thumb>
 
         // 计算时间差
         long daysBetween = ChronoUnit.DAYS.between(publishTime, now);
-        boolean isOverOneMonth = daysBetween > 30;
+        boolean isOverOneMonth = daysBetween > ThumbConstant.THUMB_DB_FALLBACK_DAYS;
         if (isOverOneMonth) {
             // 超过一个月查询数据库
             return this.lambdaQuery()
@@ -1,26 +1,41 @@
 package com.shen.thumbsups.service.impl;
 
-import cn.hutool.core.date.DateTime;
-import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.collection.CollUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.shen.thumbsups.common.ErrorCode;
-import com.shen.thumbsups.constant.RedisLuaScriptConstant;
 import com.shen.thumbsups.constant.ThumbConstant;
 import com.shen.thumbsups.domain.Blog;
 import com.shen.thumbsups.domain.Thumb;
 import com.shen.thumbsups.domain.User;
+import com.shen.thumbsups.domain.dto.thumb.BatchThumbRequest;
 import com.shen.thumbsups.domain.dto.thumb.DoThumbRequest;
 import com.shen.thumbsups.domain.enums.LuaStatusEnum;
+import com.shen.thumbsups.domain.enums.ThumbTypeEnum;
+import com.shen.thumbsups.domain.vo.ThumbBatchResultVO;
 import com.shen.thumbsups.exception.BusinessException;
+import com.shen.thumbsups.exception.ThrowUtils;
+import com.shen.thumbsups.manager.BlogThumbVelocityManager;
+import com.shen.thumbsups.manager.BlogTrendingManager;
+import com.shen.thumbsups.manager.RedisCircuitBreaker;
+import com.shen.thumbsups.manager.ThumbCountManager;
+import com.shen.thumbsups.manager.ThumbDeltaAggregator;
+import com.shen.thumbsups.manager.ThumbMembershipManager;
+import com.shen.thumbsups.manager.ThumbSliceManager;
+import com.shen.thumbsups.manager.ThumbWriteAheadLog;
 import com.shen.thumbsups.mapper.ThumbMapper;
 import com.shen.thumbsups.service.BlogService;
 import com.shen.thumbsups.service.ThumbService;
 import com.shen.thumbsups.service.UserService;
-import com.shen.thumbsups.util.RedisKeyUtil;
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.support.TransactionTemplate;
 
@@ -28,8 +43,13 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * @author 76453
@@ -53,6 +73,30 @@ public class ThumbServiceRedisImpl extends ServiceImpl<ThumbMapper, Thumb>
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Resource
+    private ThumbMembershipManager thumbMembershipManager;
+
+    @Resource
+    private ThumbCountManager thumbCountManager;
+
+    @Resource
+    private ThumbDeltaAggregator thumbDeltaAggregator;
+
+    @Resource
+    private ThumbSliceManager thumbSliceManager;
+
+    @Resource
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    @Resource
+    private ThumbWriteAheadLog thumbWriteAheadLog;
+
+    @Resource
+    private BlogTrendingManager blogTrendingManager;
+
+    @Resource
+    private BlogThumbVelocityManager blogThumbVelocityManager;
+
     @Override
     public Boolean doThumb(DoThumbRequest doThumbRequest, HttpServletRequest request) {
         if (doThumbRequest == null || doThumbRequest.getBlogId() == null) {
@@ -60,26 +104,39 @@ public class ThumbServiceRedisImpl extends ServiceImpl<ThumbMapper, Thumb>
         }
         User loginUser = userService.getLoginUser(request);
         Long blogId = doThumbRequest.getBlogId();
-        String timeSlice = getTimeSlice();
-        // Redis Key
-        String tempThumbKey = RedisKeyUtil.getTempThumbKey(timeSlice);
-        String userThumbKey = RedisKeyUtil.getUserThumbKey(loginUser.getId());
+        Long userId = loginUser.getId();
+        // Redis 降级期间写入本地日志，恢复后回放
+        if (thumbWriteAheadLog.append(userId, blogId, ThumbTypeEnum.INCR.getValue())) {
+            return true;
+        }
+        // Redis Key（当前时间片中该用户所在的分片，开启事件流时为事件流分片）
+        String tempThumbKey = thumbSliceManager.currentBufferKey(userId);
+        // 热点博客的实时点赞计数交给本地聚合器批量更新
+        boolean aggregated = isAggregated(blogId);
 
         log.info("当前创建临时点赞key : {}", tempThumbKey);
 
         // 执行Lua脚本
-        long result = redisTemplate.execute(
-                RedisLuaScriptConstant.THUMB_SCRIPT,
-                Arrays.asList(tempThumbKey, userThumbKey),
-                loginUser.getId(),
-                blogId
+        long result = redisCircuitBreaker.execute(
+                () -> redisTemplate.execute(
+                        thumbMembershipManager.script(true),
+                        thumbMembershipManager.scriptKeys(tempThumbKey, userId, blogId),
+                        thumbMembershipManager.scriptArgs(userId, blogId, !aggregated)),
+                () -> defer(userId, blogId, ThumbTypeEnum.INCR.getValue())
         );
 
         if (LuaStatusEnum.FAIL.getValue() == result) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "用户已点赞");
         }
+        if (LuaStatusEnum.SUCCESS.getValue() == result) {
+            if (aggregated) {
+                thumbDeltaAggregator.addLive(blogId, ThumbTypeEnum.INCR.getValue());
+            }
+            blogTrendingManager.record(blogId);
+            blogThumbVelocityManager.record(blogId);
+        }
 
-        return LuaStatusEnum.SUCCESS.getValue() == result;
+        return LuaStatusEnum.FAIL.getValue() != result;
     }
 
     @Override
@@ -90,38 +147,227 @@ public class ThumbServiceRedisImpl extends ServiceImpl<ThumbMapper, Thumb>
         User loginUser = userService.getLoginUser(request);
         Long blogId = doThumbRequest.getBlogId();
 
-        String timeSlice = getTimeSlice();
-        // Redis Key
-        String tempThumbKey = RedisKeyUtil.getTempThumbKey(timeSlice);
-        String userThumbKey = RedisKeyUtil.getUserThumbKey(loginUser.getId());
+        Long userId = loginUser.getId();
+        if (thumbWriteAheadLog.append(userId, blogId, ThumbTypeEnum.DECR.getValue())) {
+            return true;
+        }
+
+        // Redis Key（当前时间片中该用户所在的分片，开启事件流时为事件流分片）
+        String tempThumbKey = thumbSliceManager.currentBufferKey(userId);
+        boolean aggregated = isAggregated(blogId);
         log.info("当前创建临时取消点赞key : {}", tempThumbKey);
 
-        long result = redisTemplate.execute(
-                RedisLuaScriptConstant.UNTHUMB_SCRIPT,
-                Arrays.asList(tempThumbKey, userThumbKey),
-                loginUser.getId(),
-                blogId
+        long result = redisCircuitBreaker.execute(
+                () -> redisTemplate.execute(
+                        thumbMembershipManager.script(false),
+                        thumbMembershipManager.scriptKeys(tempThumbKey, userId, blogId),
+                        thumbMembershipManager.scriptArgs(userId, blogId, !aggregated)),
+                () -> defer(userId, blogId, ThumbTypeEnum.DECR.getValue())
         );
 
         if (LuaStatusEnum.FAIL.getValue() == result) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "用户未点赞");
         }
+        if (LuaStatusEnum.SUCCESS.getValue() == result) {
+            if (aggregated) {
+                thumbDeltaAggregator.addLive(blogId, ThumbTypeEnum.DECR.getValue());
+            }
+            blogTrendingManager.recordUndo(blogId);
+        }
 
-        return LuaStatusEnum.SUCCESS.getValue() == result;
+        return LuaStatusEnum.FAIL.getValue() != result;
     }
 
-    private String getTimeSlice() {
-        DateTime now = DateUtil.date();
-        /*
-         * 获取到当前时间最近的整数秒，避免重复点赞
-         * 例： 11:20:23 -> 11:20:20
-         */
-        return DateUtil.format(now, "HH:mm:") + (DateUtil.second(now) / 10) * 10;
+    @Override
+    public List<ThumbBatchResultVO> batchThumb(BatchThumbRequest batchThumbRequest, HttpServletRequest request) {
+        if (batchThumbRequest == null || CollUtil.isEmpty(batchThumbRequest.getOperations())) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "参数错误");
+        }
+        List<BatchThumbRequest.ThumbOperation> operations = batchThumbRequest.getOperations();
+        ThrowUtils.throwIf(operations.size() > ThumbConstant.BATCH_THUMB_MAX_SIZE, ErrorCode.PARAMS_ERROR, "批量操作数量过多");
+        for (BatchThumbRequest.ThumbOperation operation : operations) {
+            ThrowUtils.throwIf(operation == null || operation.getBlogId() == null, ErrorCode.PARAMS_ERROR, "参数错误");
+            ThrowUtils.throwIf(!Objects.equals(operation.getType(), ThumbTypeEnum.INCR.getValue())
+                    && !Objects.equals(operation.getType(), ThumbTypeEnum.DECR.getValue()), ErrorCode.PARAMS_ERROR, "操作类型错误");
+        }
+        User loginUser = userService.getLoginUser(request);
+        if (!redisCircuitBreaker.isClosed()) {
+            return deferBatch(loginUser.getId(), operations);
+        }
+        String tempThumbKey = thumbSliceManager.currentBufferKey(loginUser.getId());
+        RedisScript<Long> thumbScript = thumbMembershipManager.script(true);
+        RedisScript<Long> unthumbScript = thumbMembershipManager.script(false);
+
+        boolean[] aggregated = new boolean[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            aggregated[i] = isAggregated(operations.get(i).getBlogId());
+        }
+
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        List<RedisScript<Long>> scripts = new ArrayList<>(operations.size());
+        List<byte[][]> keysAndArgsList = new ArrayList<>(operations.size());
+        int[] numKeys = new int[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            BatchThumbRequest.ThumbOperation operation = operations.get(i);
+            scripts.add(Objects.equals(operation.getType(), ThumbTypeEnum.INCR.getValue()) ? thumbScript : unthumbScript);
+            List<String> keys = thumbMembershipManager.scriptKeys(tempThumbKey, loginUser.getId(), operation.getBlogId());
+            Object[] args = thumbMembershipManager.scriptArgs(loginUser.getId(), operation.getBlogId(), !aggregated[i]);
+            byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+            for (int j = 0; j < keys.size(); j++) {
+                keysAndArgs[j] = stringSerializer.serialize(keys.get(j));
+            }
+            for (int j = 0; j < args.length; j++) {
+                keysAndArgs[keys.size() + j] = stringSerializer.serialize(args[j].toString());
+            }
+            keysAndArgsList.add(keysAndArgs);
+            numKeys[i] = keys.size();
+        }
+        // 一个 pipeline 按 SHA 执行整批操作
+        List<Object> pipelineResults = redisCircuitBreaker.execute(
+                () -> evalShaPipelined(scripts, keysAndArgsList, numKeys), () -> null);
+        if (pipelineResults == null) {
+            return deferBatch(loginUser.getId(), operations);
+        }
+
+        List<ThumbBatchResultVO> results = new ArrayList<>(operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            BatchThumbRequest.ThumbOperation operation = operations.get(i);
+            Object result = pipelineResults.get(i);
+            boolean isThumb = Objects.equals(operation.getType(), ThumbTypeEnum.INCR.getValue());
+            ThumbBatchResultVO resultVO = new ThumbBatchResultVO();
+            resultVO.setBlogId(operation.getBlogId());
+            resultVO.setType(operation.getType());
+            resultVO.setSuccess(result instanceof Long status && status == LuaStatusEnum.SUCCESS.getValue());
+            if (!resultVO.getSuccess()) {
+                resultVO.setMessage(isThumb ? "用户已点赞" : "用户未点赞");
+            } else {
+                if (aggregated[i]) {
+                    thumbDeltaAggregator.addLive(operation.getBlogId(), operation.getType());
+                }
+                if (isThumb) {
+                    blogTrendingManager.record(operation.getBlogId());
+                    blogThumbVelocityManager.record(operation.getBlogId());
+                } else {
+                    blogTrendingManager.recordUndo(operation.getBlogId());
+                }
+            }
+            results.add(resultVO);
+        }
+        return results;
+    }
+
+    /**
+     * 一个 pipeline 按 SHA 执行整批脚本，只传输脚本摘要
+     * Redis 重启或执行过 SCRIPT FLUSH 后脚本缓存为空，对应操作返回 NOSCRIPT（其余操作已正常执行），
+     * 此时加载缺失的脚本后只重试这些操作
+     *
+     * @return 与 scripts 一一对应的脚本返回值
+     */
+    private List<Object> evalShaPipelined(List<RedisScript<Long>> scripts, List<byte[][]> keysAndArgsList, int[] numKeys) {
+        List<Integer> indexes = new ArrayList<>(scripts.size());
+        for (int i = 0; i < scripts.size(); i++) {
+            indexes.add(i);
+        }
+        List<Object> results = new ArrayList<>(scripts.size());
+        try {
+            results.addAll(evalShaPipelined(scripts, keysAndArgsList, numKeys, indexes));
+            return results;
+        } catch (RedisPipelineException e) {
+            // 只处理 NOSCRIPT，其余错误照常抛出，计入断路器
+            List<Object> pipelineResult = e.getPipelineResult();
+            if (pipelineResult.size() != scripts.size() || !pipelineResult.stream()
+                    .filter(Throwable.class::isInstance)
+                    .map(Throwable.class::cast)
+                    .allMatch(ThumbServiceRedisImpl::isNoScriptError)) {
+                throw e;
+            }
+            results.addAll(pipelineResult);
+        }
+        List<Integer> missingIndexes = new ArrayList<>();
+        Map<String, RedisScript<Long>> missingScripts = new LinkedHashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) instanceof Throwable) {
+                missingIndexes.add(i);
+                missingScripts.putIfAbsent(scripts.get(i).getSha1(), scripts.get(i));
+            }
+        }
+        log.info("Redis 脚本缓存缺失，重新加载脚本数 = {}，重试操作数 = {}", missingScripts.size(), missingIndexes.size());
+        RedisSerializer<String> stringSerializer = redisTemplate.getStringSerializer();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            missingScripts.values().forEach(script -> connection.scriptingCommands().scriptLoad(stringSerializer.serialize(script.getScriptAsString())));
+            return null;
+        }, stringSerializer);
+        List<Object> retried = evalShaPipelined(scripts, keysAndArgsList, numKeys, missingIndexes);
+        for (int i = 0; i < missingIndexes.size(); i++) {
+            results.set(missingIndexes.get(i), retried.get(i));
+        }
+        return results;
+    }
+
+    private List<Object> evalShaPipelined(List<RedisScript<Long>> scripts, List<byte[][]> keysAndArgsList, int[] numKeys, List<Integer> indexes) {
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            RedisScriptingCommands scriptingCommands = connection.scriptingCommands();
+            for (int index : indexes) {
+                scriptingCommands.evalSha(scripts.get(index).getSha1(), ReturnType.INTEGER, numKeys[index], keysAndArgsList.get(index));
+            }
+            return null;
+        }, redisTemplate.getStringSerializer());
+    }
+
+    private static boolean isNoScriptError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Redis 降级时把整批操作写入本地日志
+     */
+    private List<ThumbBatchResultVO> deferBatch(Long userId, List<BatchThumbRequest.ThumbOperation> operations) {
+        List<ThumbBatchResultVO> results = new ArrayList<>(operations.size());
+        for (BatchThumbRequest.ThumbOperation operation : operations) {
+            defer(userId, operation.getBlogId(), operation.getType());
+            ThumbBatchResultVO resultVO = new ThumbBatchResultVO();
+            resultVO.setBlogId(operation.getBlogId());
+            resultVO.setType(operation.getType());
+            resultVO.setSuccess(true);
+            resultVO.setMessage("已暂存，Redis 恢复后生效");
+            results.add(resultVO);
+        }
+        return results;
+    }
+
+    /**
+     * 写入本地日志，由回放任务在 Redis 恢复后执行；写入失败（断路器已闭合或磁盘异常）时请用户重试
+     * 写入日志时无法检查用户是否已点赞，返回的成功只表示已受理，重复的操作在回放时由脚本丢弃
+     */
+    private Long defer(Long userId, Long blogId, int type) {
+        ThrowUtils.throwIf(!thumbWriteAheadLog.append(userId, blogId, type), ErrorCode.SYSTEM_ERROR, "系统繁忙，请稍后重试");
+        return LuaStatusEnum.DEFERRED.getValue();
+    }
+
+    /**
+     * 记录一次点赞写入，并判断该博客的实时计数是否由本地聚合器负责
+     */
+    private boolean isAggregated(Long blogId) {
+        thumbCountManager.recordThumb(blogId);
+        return thumbDeltaAggregator.isEnabled() && thumbCountManager.isHot(blogId);
     }
 
     @Override
     public Boolean hasThumb(Long userId, Long blogId) {
-        return redisTemplate.opsForHash().hasKey(ThumbConstant.USER_THUMB_KEY_PREFIX + userId, blogId.toString());
+        return thumbMembershipManager.hasThumb(userId, blogId);
+    }
+
+    /**
+     * Redis 模式下点赞记录完整保存在 Redis 中（Hash 或位图），一次往返
+     */
+    @Override
+    public Map<Long, Boolean> hasThumbBatch(long userId, Collection<Long> blogIds) {
+        return thumbMembershipManager.hasThumbBatch(userId, blogIds);
     }
 }
 
@@ -12,4 +12,73 @@ public class RedisKeyUtil {
     public static String getTempThumbKey(String time) {
         return ThumbConstant.TEMP_THUMB_KEY_PREFIX.formatted(time);
     }
+
+    public static String getTempThumbKey(long sliceId, int shard) {
+        return ThumbConstant.TEMP_THUMB_SHARD_KEY.formatted(sliceId, shard);
+    }
+
+    /**
+     * 由临时点赞记录键（或其同步中 / 分块键）得到同步中的键，与临时键使用相同的后缀
+     */
+    public static String getSyncThumbKey(String tempThumbKey) {
+        return ThumbConstant.SYNC_THUMB_KEY_PREFIX.formatted(getTempThumbSuffix(tempThumbKey));
+    }
+
+    public static String getChunkThumbKey(String tempThumbKey) {
+        return ThumbConstant.CHUNK_THUMB_KEY_PREFIX.formatted(getTempThumbSuffix(tempThumbKey));
+    }
+
+    /**
+     * 同步中的键按 blogId 拆出的分区：thumb:sync:xxx#partition
+     */
+    public static String getSyncThumbKey(String tempThumbKey, int partition) {
+        return getSyncThumbKey(tempThumbKey) + ThumbConstant.THUMB_PARTITION_SEPARATOR + partition;
+    }
+
+    public static String getChunkThumbKey(String tempThumbKey, int partition) {
+        return getChunkThumbKey(tempThumbKey) + ThumbConstant.THUMB_PARTITION_SEPARATOR + partition;
+    }
+
+    /**
+     * 同步中 / 分块键对应的临时点赞记录键
+     */
+    public static String getTempThumbKeyOf(String key) {
+        return getTempThumbKey(getTempThumbSuffix(key));
+    }
+
+    /**
+     * 去掉 thumb:temp: / thumb:sync: / thumb:chunk: 前缀与分区后缀
+     */
+    private static String getTempThumbSuffix(String key) {
+        int end = key.indexOf(ThumbConstant.THUMB_PARTITION_SEPARATOR);
+        return key.substring(key.indexOf(':', ThumbConstant.USER_THUMB_KEY_PREFIX.length()) + 1, end < 0 ? key.length() : end);
+    }
+
+    public static String getThumbStreamKey(int shard) {
+        return ThumbConstant.THUMB_STREAM_KEY.formatted(shard);
+    }
+
+    public static String getUserThumbBitmapKey(Long userId, Long blogId) {
+        return ThumbConstant.USER_THUMB_BITMAP_KEY_PREFIX.formatted(userId, blogId >> ThumbConstant.USER_THUMB_BITMAP_BUCKET_BITS);
+    }
+
+    public static long getUserThumbBitmapOffset(Long blogId) {
+        return blogId & ((1L << ThumbConstant.USER_THUMB_BITMAP_BUCKET_BITS) - 1);
+    }
+
+    public static String getBlogThumbCountKey(Long blogId) {
+        return ThumbConstant.BLOG_THUMB_COUNT_KEY_PREFIX + blogId;
+    }
+
+    public static String getBlogDetailKey(Long blogId) {
+        return ThumbConstant.BLOG_DETAIL_KEY_PREFIX + blogId;
+    }
+
+    public static String getTrendingKey(long bucket) {
+        return ThumbConstant.THUMB_TRENDING_KEY_PREFIX + bucket;
+    }
+
+    public static String getBlogThumbVelocityKey(Long blogId) {
+        return ThumbConstant.BLOG_THUMB_VELOCITY_KEY_PREFIX + blogId;
+    }
 }
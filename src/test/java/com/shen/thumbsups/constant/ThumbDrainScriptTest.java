@@ -0,0 +1,173 @@
+package com.shen.thumbsups.constant;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同步脚本在真实 Redis 上把大 Hash 完整取空：HDEL 使 Hash 缩容后单次 HSCAN 可能取不到记录，脚本不能因此提前返回 0
+ * 需要 Docker，没有 Docker 时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ThumbDrainScriptTest {
+
+    private static final int FIELD_COUNT = 20_000;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int PARTITIONS = 8;
+
+    private static final String SYNC_THUMB_KEY = "thumb:sync:{1745000000:3}";
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7.2-alpine"))
+            .withExposedPorts(6379);
+
+    private static JedisConnectionFactory connectionFactory;
+
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void flush() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void partitionScriptMovesEveryRecord() {
+        Map<String, String> records = seed(SYNC_THUMB_KEY);
+        List<String> partitionKeys = new ArrayList<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitionKeys.add(SYNC_THUMB_KEY + ThumbConstant.THUMB_PARTITION_SEPARATOR + partition);
+        }
+        List<String> keys = new ArrayList<>();
+        keys.add(SYNC_THUMB_KEY);
+        keys.addAll(partitionKeys);
+
+        long moved = 0;
+        while (true) {
+            Long batch = redisTemplate.execute(RedisLuaScriptConstant.PARTITION_THUMB_SCRIPT, keys, String.valueOf(BATCH_SIZE));
+            if (batch == null || batch == 0) {
+                break;
+            }
+            assertTrue(batch <= BATCH_SIZE);
+            moved += batch;
+        }
+
+        assertEquals(FIELD_COUNT, moved);
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey(SYNC_THUMB_KEY)));
+        Map<String, String> partitioned = new HashMap<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(partitionKeys.get(partition));
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                String field = entry.getKey().toString();
+                long blogId = Long.parseLong(field.substring(field.indexOf(':') + 1));
+                // 同一博客的记录始终落在同一分区
+                assertEquals(blogId % PARTITIONS, partition);
+                partitioned.put(field, entry.getValue().toString());
+            }
+        }
+        assertEquals(records, partitioned);
+    }
+
+    @Test
+    void partitionScriptMergesIntoLeftoverPartition() {
+        String partitionKey = SYNC_THUMB_KEY + ThumbConstant.THUMB_PARTITION_SEPARATOR + 0;
+        // 上一次中断留下的取消点赞与本次的点赞抵消，另一条记录累加
+        redisTemplate.opsForHash().put(partitionKey, "1:8", "-1");
+        redisTemplate.opsForHash().put(partitionKey, "2:16", "1");
+        redisTemplate.opsForHash().put(SYNC_THUMB_KEY, "1:8", "1");
+        redisTemplate.opsForHash().put(SYNC_THUMB_KEY, "3:16", "-1");
+
+        Long moved = redisTemplate.execute(RedisLuaScriptConstant.PARTITION_THUMB_SCRIPT,
+                List.of(SYNC_THUMB_KEY, partitionKey), String.valueOf(BATCH_SIZE));
+
+        assertEquals(2, moved);
+        assertEquals(Map.of("2:16", "1", "3:16", "-1"), redisTemplate.opsForHash().entries(partitionKey));
+    }
+
+    @Test
+    void takeChunkScriptTakesEveryRecordOnce() {
+        Map<String, String> records = seed(SYNC_THUMB_KEY);
+        String chunkThumbKey = "thumb:chunk:{1745000000:3}";
+
+        Map<String, String> taken = new HashMap<>();
+        long chunkId = 1;
+        while (true) {
+            Long batch = redisTemplate.execute(RedisLuaScriptConstant.TAKE_THUMB_CHUNK_SCRIPT,
+                    List.of(SYNC_THUMB_KEY, chunkThumbKey), String.valueOf(BATCH_SIZE), String.valueOf(chunkId));
+            if (batch == null || batch == 0) {
+                break;
+            }
+            Map<Object, Object> chunk = redisTemplate.opsForHash().entries(chunkThumbKey);
+            assertEquals(String.valueOf(chunkId), chunk.remove(ThumbConstant.CHUNK_ID_FIELD));
+            assertEquals(batch.intValue(), chunk.size());
+            chunk.forEach((field, value) -> assertNull(taken.put(field.toString(), value.toString())));
+            // 模拟分块落库完成
+            redisTemplate.delete(chunkThumbKey);
+            chunkId++;
+        }
+
+        assertEquals(records, taken);
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey(SYNC_THUMB_KEY)));
+    }
+
+    @Test
+    void takeChunkScriptWaitsForUnfinishedChunk() {
+        String chunkThumbKey = "thumb:chunk:{1745000000:3}";
+        redisTemplate.opsForHash().put(SYNC_THUMB_KEY, "1:1", "1");
+        redisTemplate.opsForHash().put(chunkThumbKey, ThumbConstant.CHUNK_ID_FIELD, "7");
+
+        Long taken = redisTemplate.execute(RedisLuaScriptConstant.TAKE_THUMB_CHUNK_SCRIPT,
+                List.of(SYNC_THUMB_KEY, chunkThumbKey), String.valueOf(BATCH_SIZE), "8");
+
+        assertEquals(-1, taken);
+        assertEquals(1, redisTemplate.opsForHash().size(SYNC_THUMB_KEY));
+    }
+
+    /**
+     * 写入 FIELD_COUNT 条 userId:blogId 记录，足够大以使用 hashtable 编码并在取空过程中缩容
+     */
+    private Map<String, String> seed(String key) {
+        Map<String, String> records = new HashMap<>();
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            records.put(i + ":" + (1_000 + i % 997), i % 3 == 0 ? "-1" : "1");
+        }
+        redisTemplate.opsForHash().putAll(key, records);
+        return records;
+    }
+}
@@ -0,0 +1,104 @@
+package com.shen.thumbsups.constant;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 删除旧消费者的脚本只删除没有待确认事件且空闲足够久的消费者，当前消费者与仍有待确认事件的消费者保留
+ * 需要 Docker，没有 Docker 时跳过
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ThumbStreamConsumerScriptTest {
+
+    private static final String STREAM_KEY = "thumb:stream:{0}";
+
+    private static final String GROUP = ThumbConstant.THUMB_STREAM_GROUP;
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7.2-alpine"))
+            .withExposedPorts(6379);
+
+    private static JedisConnectionFactory connectionFactory;
+
+    private static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void flush() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        redisTemplate.opsForStream().add(STREAM_KEY, Map.of("userId", "1", "blogId", "1", "type", "1"));
+        redisTemplate.opsForStream().createGroup(STREAM_KEY, ReadOffset.from("0"), GROUP);
+    }
+
+    @Test
+    void deletesOnlyIdleConsumersWithoutPendingEvents() {
+        // 旧进程 A 读取事件后宕机，待确认事件尚未被认领；旧进程 B 读取时没有事件
+        read("host:100-0");
+        read("host:200-0");
+        read("host:300-0");
+
+        Long deleted = redisTemplate.execute(RedisLuaScriptConstant.DELETE_IDLE_CONSUMERS_SCRIPT, List.of(STREAM_KEY),
+                GROUP, "host:300-0", "0");
+
+        assertEquals(1, deleted);
+        assertEquals(Set.of("host:100-0", "host:300-0"), consumerNames());
+    }
+
+    @Test
+    void keepsConsumersThatWereActiveRecently() {
+        read("host:100-0");
+        read("host:200-0");
+
+        Long deleted = redisTemplate.execute(RedisLuaScriptConstant.DELETE_IDLE_CONSUMERS_SCRIPT, List.of(STREAM_KEY),
+                GROUP, "host:300-0", "60000");
+
+        assertEquals(0, deleted);
+        assertEquals(Set.of("host:100-0", "host:200-0"), consumerNames());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void read(String consumer) {
+        redisTemplate.opsForStream().read(Consumer.from(GROUP, consumer), StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed()));
+    }
+
+    private Set<String> consumerNames() {
+        StreamInfo.XInfoConsumers consumers = redisTemplate.opsForStream().consumers(STREAM_KEY, GROUP);
+        return consumers.stream().map(StreamInfo.XInfoConsumer::consumerName).collect(Collectors.toSet());
+    }
+}
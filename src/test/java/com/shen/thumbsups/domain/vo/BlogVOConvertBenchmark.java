@@ -0,0 +1,70 @@
+package com.shen.thumbsups.domain.vo;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.shen.thumbsups.domain.Blog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * BlogVO.objToVo 与反射拷贝（BeanUtil.copyProperties）的耗时对比
+ * 默认不运行：mvn test -Dtest=BlogVOConvertBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BlogVOConvertBenchmark {
+
+    private static final int BLOG_COUNT = 1_000;
+
+    private static final int WARMUP_ROUNDS = 20;
+
+    private static final int MEASURE_ROUNDS = 50;
+
+    /**
+     * 防止转换结果被 JIT 消除
+     */
+    private static volatile long sink;
+
+    @Test
+    void compareWithReflectiveCopy() throws ReflectiveOperationException {
+        List<Blog> blogs = new ArrayList<>(BLOG_COUNT);
+        for (int i = 0; i < BLOG_COUNT; i++) {
+            Blog blog = BlogVOTest.fullBlog();
+            blog.setId((long) i);
+            blogs.add(blog);
+        }
+
+        double handwritten = measure(blogs, BlogVO::objToVo);
+        double reflective = measure(blogs, blog -> BeanUtil.copyProperties(blog, BlogVO.class));
+        System.out.printf("BlogVO.objToVo: %.1f ns/op, BeanUtil.copyProperties: %.1f ns/op (%.1fx)%n",
+                handwritten, reflective, reflective / handwritten);
+    }
+
+    /**
+     * @return 每次转换耗时的中位数（纳秒）
+     */
+    private double measure(List<Blog> blogs, Function<Blog, BlogVO> converter) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            convertAll(blogs, converter);
+        }
+        double[] nanosPerOp = new double[MEASURE_ROUNDS];
+        for (int round = 0; round < MEASURE_ROUNDS; round++) {
+            long start = System.nanoTime();
+            convertAll(blogs, converter);
+            nanosPerOp[round] = (double) (System.nanoTime() - start) / blogs.size();
+        }
+        Arrays.sort(nanosPerOp);
+        return nanosPerOp[MEASURE_ROUNDS / 2];
+    }
+
+    private void convertAll(List<Blog> blogs, Function<Blog, BlogVO> converter) {
+        long checksum = 0;
+        for (Blog blog : blogs) {
+            checksum += converter.apply(blog).getId();
+        }
+        sink += checksum;
+    }
+}
@@ -0,0 +1,84 @@
+package com.shen.thumbsups.domain.vo;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.shen.thumbsups.domain.Blog;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BlogVOTest {
+
+    @Test
+    void objToVoMatchesReflectiveCopy() throws ReflectiveOperationException {
+        Blog blog = fullBlog();
+
+        BlogVO expected = BeanUtil.copyProperties(blog, BlogVO.class);
+        BlogVO actual = BlogVO.objToVo(blog);
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void objToVoCopiesEverySharedField() throws ReflectiveOperationException {
+        Blog blog = fullBlog();
+        BlogVO blogVO = BlogVO.objToVo(blog);
+
+        // Blog 新增与 BlogVO 同名的字段时，objToVo 也要复制
+        for (Field voField : BlogVO.class.getDeclaredFields()) {
+            if (Modifier.isStatic(voField.getModifiers())) {
+                continue;
+            }
+            Field blogField;
+            try {
+                blogField = Blog.class.getDeclaredField(voField.getName());
+            } catch (NoSuchFieldException e) {
+                continue;
+            }
+            voField.setAccessible(true);
+            blogField.setAccessible(true);
+            assertNotNull(voField.get(blogVO), voField.getName());
+            assertEquals(blogField.get(blog), voField.get(blogVO), voField.getName());
+        }
+        // 点赞状态由调用方填充
+        assertNull(blogVO.getHasThumb());
+    }
+
+    @Test
+    void objToVoReturnsNullForNullBlog() {
+        assertNull(BlogVO.objToVo(null));
+    }
+
+    /**
+     * 每个字段都填上不同的值，字段复制错位时能发现
+     */
+    static Blog fullBlog() throws ReflectiveOperationException {
+        Blog blog = new Blog();
+        int seed = 1;
+        for (Field field : Blog.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            field.setAccessible(true);
+            Class<?> type = field.getType();
+            if (type == Long.class) {
+                field.set(blog, 1_000_000_000_000L + seed);
+            } else if (type == Integer.class) {
+                field.set(blog, 100 + seed);
+            } else if (type == String.class) {
+                field.set(blog, field.getName() + "-" + seed);
+            } else if (type == Date.class) {
+                field.set(blog, new Date(1_745_000_000_000L + seed * 1000L));
+            } else {
+                throw new IllegalStateException("未处理的字段类型：" + field);
+            }
+            seed++;
+        }
+        return blog;
+    }
+}
@@ -0,0 +1,189 @@
+package com.shen.thumbsups.job;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 临时点赞落库写法的耗时对比（MySQL 容器）：
+ * 旧写法为 saveBatch（逐行 INSERT 的 JDBC 批处理，连接未开启 rewriteBatchedStatements 时每行一次往返）
+ * 与 OR 拼接的 DELETE；新写法为 ThumbMapper 中按批次拆分的多行 INSERT ... ON DUPLICATE KEY UPDATE
+ * 与 (userId, blogId) IN (...) 的 DELETE
+ * 默认不运行：mvn test -Dtest=ThumbSyncWriteBenchmark -Dbenchmark=true（需要 Docker）
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ThumbSyncWriteBenchmark {
+
+    /**
+     * 一个分块的记录数
+     */
+    private static final int CHUNK_SIZE = 5_000;
+
+    /**
+     * 与 thumb.sync.insert-batch-size / delete-batch-size 默认值一致
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private static final int ROUNDS = 5;
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"));
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void connect() throws SQLException {
+        connection = DriverManager.getConnection(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    create table thumb
+                    (
+                        id         bigint auto_increment primary key,
+                        userId     bigint                             not null,
+                        blogId     bigint                             not null,
+                        createTime datetime default CURRENT_TIMESTAMP not null,
+                        unique key uk_userId_blogId (userId, blogId),
+                        index idx_blogId (blogId)
+                    )
+                    """);
+        }
+    }
+
+    @AfterAll
+    static void disconnect() throws SQLException {
+        connection.close();
+    }
+
+    @BeforeEach
+    void truncate() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("truncate table thumb");
+        }
+    }
+
+    @Test
+    void compareSingleRowAndMultiRowStatements() throws SQLException {
+        long singleRowInsert = 0;
+        long multiRowInsert = 0;
+        long orChainedDelete = 0;
+        long rowValueInDelete = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            List<long[]> thumbs = chunk(round * 2);
+            singleRowInsert += timed(() -> insertSingleRow(thumbs));
+            orChainedDelete += timed(() -> deleteOrChained(thumbs));
+            assertEquals(0, count());
+
+            List<long[]> otherThumbs = chunk(round * 2 + 1);
+            multiRowInsert += timed(() -> insertMultiRow(otherThumbs));
+            assertEquals(CHUNK_SIZE, count());
+            rowValueInDelete += timed(() -> deleteRowValueIn(otherThumbs));
+            assertEquals(0, count());
+        }
+        System.out.printf("每个分块 %d 条记录，%d 轮平均：%n", CHUNK_SIZE, ROUNDS);
+        System.out.printf("INSERT saveBatch: %d ms, 多行 INSERT: %d ms%n", singleRowInsert / ROUNDS, multiRowInsert / ROUNDS);
+        System.out.printf("DELETE OR 拼接: %d ms, (userId, blogId) IN: %d ms%n", orChainedDelete / ROUNDS, rowValueInDelete / ROUNDS);
+    }
+
+    /**
+     * 旧写法：saveBatch，逐行 INSERT 的 JDBC 批处理
+     */
+    private void insertSingleRow(List<long[]> thumbs) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("insert into thumb (userId, blogId) values (?, ?)")) {
+            for (long[] thumb : thumbs) {
+                statement.setLong(1, thumb[0]);
+                statement.setLong(2, thumb[1]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * 旧写法：一条 DELETE，条件为 (userId = ? and blogId = ?) or ... 拼接
+     */
+    private void deleteOrChained(List<long[]> thumbs) throws SQLException {
+        String conditions = thumbs.stream().map(thumb -> "(userId = ? and blogId = ?)").collect(Collectors.joining(" or "));
+        executeWithPairs("delete from thumb where " + conditions, thumbs);
+    }
+
+    /**
+     * 新写法：ThumbMapper.insertBatchOnDuplicate，按批次拆分
+     */
+    private void insertMultiRow(List<long[]> thumbs) throws SQLException {
+        for (int from = 0; from < thumbs.size(); from += BATCH_SIZE) {
+            List<long[]> batch = thumbs.subList(from, Math.min(from + BATCH_SIZE, thumbs.size()));
+            String values = batch.stream().map(thumb -> "(?, ?)").collect(Collectors.joining(","));
+            executeWithPairs("insert into thumb (userId, blogId) values " + values + " on duplicate key update id = id", batch);
+        }
+    }
+
+    /**
+     * 新写法：ThumbMapper.deleteBatchByUserIdAndBlogId，按批次拆分
+     */
+    private void deleteRowValueIn(List<long[]> thumbs) throws SQLException {
+        for (int from = 0; from < thumbs.size(); from += BATCH_SIZE) {
+            List<long[]> batch = thumbs.subList(from, Math.min(from + BATCH_SIZE, thumbs.size()));
+            String values = batch.stream().map(thumb -> "(?, ?)").collect(Collectors.joining(","));
+            executeWithPairs("delete from thumb where (userId, blogId) in (" + values + ")", batch);
+        }
+    }
+
+    private void executeWithPairs(String sql, List<long[]> thumbs) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (long[] thumb : thumbs) {
+                statement.setLong(index++, thumb[0]);
+                statement.setLong(index++, thumb[1]);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    private long count() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             var resultSet = statement.executeQuery("select count(*) from thumb")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * 每轮使用不同的 userId，避免命中上一轮留下的缓存页
+     */
+    private List<long[]> chunk(int round) {
+        List<long[]> thumbs = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            thumbs.add(new long[]{(long) round * CHUNK_SIZE + i, 1_000 + i % 997});
+        }
+        return thumbs;
+    }
+
+    private static long timed(SqlAction action) throws SQLException {
+        long start = System.nanoTime();
+        action.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+}
@@ -0,0 +1,83 @@
+package com.shen.thumbsups.manager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BlogDetailCacheManagerTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private BlogDetailCacheManager blogDetailCacheManager;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.getStringSerializer()).thenReturn(StringRedisSerializer.UTF_8);
+        blogDetailCacheManager = new BlogDetailCacheManager();
+        ReflectionTestUtils.setField(blogDetailCacheManager, "stringRedisTemplate", stringRedisTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void incrThumbCountRunsImmediatelyOutsideTransaction() {
+        blogDetailCacheManager.incrThumbCount(Map.of(1L, 1L));
+
+        verify(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void incrThumbCountWaitsForCommit() {
+        beginTransaction();
+        blogDetailCacheManager.incrThumbCount(Map.of(1L, 1L));
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void incrThumbCountSkippedOnRollback() {
+        beginTransaction();
+        blogDetailCacheManager.incrThumbCount(Map.of(1L, 1L));
+
+        // 回滚只触发 afterCompletion，不触发 afterCommit
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void incrThumbCountRunsImmediatelyWhenOnlySynchronizationIsActive() {
+        // PROPAGATION_SUPPORTS 等没有实际事务的同步范围内不推迟
+        TransactionSynchronizationManager.initSynchronization();
+        blogDetailCacheManager.incrThumbCount(Map.of(1L, 1L));
+
+        verify(stringRedisTemplate).executePipelined(any(RedisCallback.class));
+    }
+
+    private void beginTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+}
@@ -0,0 +1,123 @@
+package com.shen.thumbsups.manager;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.mapper.BlogMapper;
+import com.shen.thumbsups.mapper.BlogThumbSlotMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ThumbCountManagerTest {
+
+    private static final long BLOG_ID = 42L;
+
+    private BlogMapper blogMapper;
+
+    private BlogThumbSlotMapper blogThumbSlotMapper;
+
+    private ThumbDeltaAggregator thumbDeltaAggregator;
+
+    private ThumbProperties thumbProperties;
+
+    private ThumbCountManager thumbCountManager;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        blogMapper = mock(BlogMapper.class);
+        when(blogMapper.update(isNull(), any(Wrapper.class))).thenReturn(1);
+        blogThumbSlotMapper = mock(BlogThumbSlotMapper.class);
+        when(blogThumbSlotMapper.addToSlot(anyLong(), anyInt(), anyLong())).thenReturn(1);
+        thumbDeltaAggregator = mock(ThumbDeltaAggregator.class);
+        thumbProperties = new ThumbProperties();
+
+        thumbCountManager = new ThumbCountManager();
+        // 与 CacheManager 中的热 key 探测器参数一致：出现 10 次才开始记录
+        ReflectionTestUtils.setField(thumbCountManager, "hotKeyDetector", new HeavyKeeper(100, 100000, 5, 0.92, 10));
+        ReflectionTestUtils.setField(thumbCountManager, "blogMapper", blogMapper);
+        ReflectionTestUtils.setField(thumbCountManager, "blogThumbSlotMapper", blogThumbSlotMapper);
+        ReflectionTestUtils.setField(thumbCountManager, "thumbDeltaAggregator", thumbDeltaAggregator);
+        ReflectionTestUtils.setField(thumbCountManager, "blogDetailCacheManager", mock(BlogDetailCacheManager.class));
+        ReflectionTestUtils.setField(thumbCountManager, "thumbProperties", thumbProperties);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coldBlogUpdatesBlogRow() {
+        thumbCountManager.recordThumb(BLOG_ID);
+        thumbCountManager.foldSlots();
+
+        assertFalse(thumbCountManager.isHot(BLOG_ID));
+        assertTrue(thumbCountManager.incr(BLOG_ID, 1));
+        verify(blogMapper).update(isNull(), any(Wrapper.class));
+        verify(blogThumbSlotMapper, never()).addToSlot(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void hotBlogSwitchesToSlotWrites() {
+        // 与 ThumbServiceImpl.doThumb 相同的调用顺序：先计入探测器再更新计数
+        for (int i = 0; i < 20; i++) {
+            thumbCountManager.recordThumb(BLOG_ID);
+        }
+        thumbCountManager.foldSlots();
+
+        assertTrue(thumbCountManager.isStriped(BLOG_ID));
+        assertTrue(thumbCountManager.incr(BLOG_ID, 1));
+        verify(blogThumbSlotMapper).addToSlot(eq(BLOG_ID), anyInt(), eq(1L));
+        verify(blogMapper, never()).update(isNull(), any(Wrapper.class));
+    }
+
+    @Test
+    void stripeTakesPrecedenceOverAggregator() {
+        when(thumbDeltaAggregator.isEnabled()).thenReturn(true);
+        for (int i = 0; i < 20; i++) {
+            thumbCountManager.recordThumb(BLOG_ID);
+        }
+        thumbCountManager.foldSlots();
+
+        assertTrue(thumbCountManager.incr(BLOG_ID, 1));
+        verify(blogThumbSlotMapper).addToSlot(eq(BLOG_ID), anyInt(), eq(1L));
+        verify(thumbDeltaAggregator, never()).add(anyLong(), anyLong());
+    }
+
+    @Test
+    void hotBlogAggregatesWhenStripeDisabled() {
+        thumbProperties.getStripe().setEnabled(false);
+        when(thumbDeltaAggregator.isEnabled()).thenReturn(true);
+        for (int i = 0; i < 20; i++) {
+            thumbCountManager.recordThumb(BLOG_ID);
+        }
+        thumbCountManager.foldSlots();
+
+        assertTrue(thumbCountManager.incr(BLOG_ID, 1));
+        verify(thumbDeltaAggregator).add(BLOG_ID, 1);
+        verify(blogThumbSlotMapper, never()).addToSlot(anyLong(), anyInt(), anyLong());
+    }
+
+    @Test
+    void hotBlogUpdatesBlogRowWhenStripeDisabled() {
+        thumbProperties.getStripe().setEnabled(false);
+        for (int i = 0; i < 20; i++) {
+            thumbCountManager.recordThumb(BLOG_ID);
+        }
+        thumbCountManager.foldSlots();
+
+        assertFalse(thumbCountManager.isStriped(BLOG_ID));
+        thumbCountManager.incr(BLOG_ID, 1);
+        verify(blogThumbSlotMapper, never()).addToSlot(anyLong(), anyInt(), anyLong());
+    }
+}
@@ -0,0 +1,89 @@
+package com.shen.thumbsups.manager;
+
+import com.shen.thumbsups.config.ThumbProperties;
+import com.shen.thumbsups.constant.ThumbConstant;
+import com.shen.thumbsups.domain.enums.ThumbMembershipStoreEnum;
+import com.shen.thumbsups.util.RedisKeyUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ThumbMembershipManagerTest {
+
+    private static final long USER_ID = 7L;
+
+    private static final long BLOG_ID = 42L;
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private ThumbMembershipManager thumbMembershipManager;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        when(valueOperations.getBit(anyString(), anyLong())).thenReturn(false);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        hashOperations = mock(HashOperations.class);
+        when(hashOperations.hasKey(RedisKeyUtil.getUserThumbKey(USER_ID), String.valueOf(BLOG_ID))).thenReturn(true);
+        when(redisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+
+        ThumbProperties thumbProperties = new ThumbProperties();
+        thumbProperties.getMembership().setStore(ThumbMembershipStoreEnum.BITMAP);
+        thumbMembershipManager = new ThumbMembershipManager();
+        ReflectionTestUtils.setField(thumbMembershipManager, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(thumbMembershipManager, "thumbProperties", thumbProperties);
+    }
+
+    @Test
+    void unmigratedUserFallsBackToHash() {
+        when(redisTemplate.hasKey(ThumbConstant.USER_THUMB_BITMAP_MIGRATED_KEY)).thenReturn(false);
+
+        assertTrue(thumbMembershipManager.hasThumb(USER_ID, BLOG_ID));
+        // 脚本同时检查 Hash，取消点赞对尚未迁移的用户也能成功
+        List<String> keys = thumbMembershipManager.scriptKeys("thumb:temp:{1:0}", USER_ID, BLOG_ID);
+        assertEquals(RedisKeyUtil.getUserThumbKey(USER_ID), keys.get(3));
+        Object[] args = thumbMembershipManager.scriptArgs(USER_ID, BLOG_ID, true);
+        assertEquals(1, args[4]);
+    }
+
+    @Test
+    void hashIsIgnoredAfterMigrationCompletes() {
+        when(redisTemplate.hasKey(ThumbConstant.USER_THUMB_BITMAP_MIGRATED_KEY)).thenReturn(true);
+
+        assertFalse(thumbMembershipManager.hasThumb(USER_ID, BLOG_ID));
+        verify(hashOperations, never()).hasKey(any(), any());
+        Object[] args = thumbMembershipManager.scriptArgs(USER_ID, BLOG_ID, true);
+        assertEquals(0, args[4]);
+    }
+
+    @Test
+    void markMigratedStopsReadingHashImmediately() {
+        when(redisTemplate.hasKey(ThumbConstant.USER_THUMB_BITMAP_MIGRATED_KEY)).thenReturn(false);
+        assertTrue(thumbMembershipManager.isReadingHash());
+
+        thumbMembershipManager.markMigrated();
+
+        assertFalse(thumbMembershipManager.isReadingHash());
+        verify(redisTemplate.opsForValue()).set(any(), any());
+    }
+}
@@ -0,0 +1,126 @@
+package com.shen.thumbsups.manager;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThumbMinuteRingTest {
+
+    private static final long BASE_MINUTE = 29_000_000L;
+
+    @Test
+    void addWrapsAndClearsOverwrittenSlots() {
+        ThumbMinuteRing ring = new ThumbMinuteRing(5, BASE_MINUTE);
+        for (int i = 0; i < 7; i++) {
+            ring.add(BASE_MINUTE + i, i + 1);
+        }
+
+        assertEquals(BASE_MINUTE + 6, ring.getHeadMinute());
+        // 只保留最近 5 分钟，最早的两分钟已被覆盖
+        assertEquals(0, ring.count(BASE_MINUTE));
+        assertEquals(0, ring.count(BASE_MINUTE + 1));
+        for (int i = 2; i < 7; i++) {
+            assertEquals(i + 1, ring.count(BASE_MINUTE + i));
+        }
+        assertEquals(0, ring.count(BASE_MINUTE + 7));
+    }
+
+    @Test
+    void addAccumulatesWithinMinuteAndIgnoresExpiredMinutes() {
+        ThumbMinuteRing ring = new ThumbMinuteRing(5, BASE_MINUTE);
+        ring.add(BASE_MINUTE, 1);
+        ring.add(BASE_MINUTE, 2);
+        ring.add(BASE_MINUTE - 5, 100);
+
+        assertEquals(3, ring.count(BASE_MINUTE));
+        assertEquals(0, ring.count(BASE_MINUTE - 5));
+        assertEquals(BASE_MINUTE, ring.getHeadMinute());
+    }
+
+    @Test
+    void addFarAheadClearsEverySlot() {
+        ThumbMinuteRing ring = new ThumbMinuteRing(5, BASE_MINUTE);
+        for (int i = 0; i < 5; i++) {
+            ring.add(BASE_MINUTE + i, 1);
+        }
+        ring.add(BASE_MINUTE + 100, 7);
+
+        assertEquals(7, ring.count(BASE_MINUTE + 100));
+        for (int i = 1; i < 5; i++) {
+            assertEquals(0, ring.count(BASE_MINUTE + 100 - i));
+        }
+    }
+
+    @Test
+    void mergeAlignsMinutesAndSkipsMinutesAfterHead() {
+        ThumbMinuteRing ring = new ThumbMinuteRing(5, BASE_MINUTE + 4);
+        ring.add(BASE_MINUTE + 4, 1);
+        ring.add(BASE_MINUTE + 3, 1);
+        ring.encode();
+
+        ThumbMinuteRing other = new ThumbMinuteRing(5, BASE_MINUTE + 5);
+        other.add(BASE_MINUTE + 1, 10);
+        other.add(BASE_MINUTE + 3, 20);
+        other.add(BASE_MINUTE + 5, 30);
+        ring.merge(other);
+
+        assertEquals(BASE_MINUTE + 4, ring.getHeadMinute());
+        assertEquals(10, ring.count(BASE_MINUTE + 1));
+        assertEquals(21, ring.count(BASE_MINUTE + 3));
+        assertEquals(1, ring.count(BASE_MINUTE + 4));
+        // 超过本缓冲区最新分钟的点赞不合并
+        assertEquals(0, ring.count(BASE_MINUTE + 5));
+        // 合并不标记为需要快照
+        assertFalse(ring.isDirty());
+    }
+
+    @Test
+    void encodeThenDecodeRestoresCounts() {
+        ThumbMinuteRing ring = new ThumbMinuteRing(1440, BASE_MINUTE);
+        ring.add(BASE_MINUTE - 1439, 4);
+        ring.add(BASE_MINUTE - 700, 5);
+        ring.add(BASE_MINUTE, 6);
+        assertTrue(ring.isDirty());
+
+        byte[] bytes = ring.encode();
+        assertFalse(ring.isDirty());
+        // 稀疏格式：最新分钟 + 非零槽位数 + 3 个 (short, int)
+        assertEquals(Long.BYTES + Integer.BYTES + 3 * (Short.BYTES + Integer.BYTES), bytes.length);
+
+        ThumbMinuteRing decoded = ThumbMinuteRing.decode(bytes, 1440);
+        assertEquals(BASE_MINUTE, decoded.getHeadMinute());
+        assertEquals(4, decoded.count(BASE_MINUTE - 1439));
+        assertEquals(5, decoded.count(BASE_MINUTE - 700));
+        assertEquals(6, decoded.count(BASE_MINUTE));
+        assertEquals(0, decoded.count(BASE_MINUTE - 1));
+    }
+
+    @Test
+    void decodeIntoSmallerRingDropsOlderMinutes() {
+        ThumbMinuteRing ring = new ThumbMinuteRing(60, BASE_MINUTE);
+        ring.add(BASE_MINUTE - 59, 1);
+        ring.add(BASE_MINUTE - 9, 2);
+
+        ThumbMinuteRing decoded = ThumbMinuteRing.decode(ring.encode(), 10);
+        assertEquals(0, decoded.count(BASE_MINUTE - 59));
+        assertEquals(2, decoded.count(BASE_MINUTE - 9));
+    }
+
+    @Test
+    void encodeKeepsLargestSupportedAge() {
+        int size = ThumbMinuteRing.MAX_SIZE;
+        ThumbMinuteRing ring = new ThumbMinuteRing(size, BASE_MINUTE);
+        ring.add(BASE_MINUTE - size + 1, 9);
+
+        assertEquals(9, ThumbMinuteRing.decode(ring.encode(), size).count(BASE_MINUTE - size + 1));
+    }
+
+    @Test
+    void rejectsSizeThatDoesNotFitInShortAge() {
+        assertThrows(IllegalArgumentException.class, () -> new ThumbMinuteRing(ThumbMinuteRing.MAX_SIZE + 1, BASE_MINUTE));
+        assertThrows(IllegalArgumentException.class, () -> new ThumbMinuteRing(0, BASE_MINUTE));
+    }
+}
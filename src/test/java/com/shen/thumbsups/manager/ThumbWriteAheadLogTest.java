@@ -0,0 +1,195 @@
+package com.shen.thumbsups.manager;
+
+import com.shen.thumbsups.config.ThumbProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ThumbWriteAheadLogTest {
+
+    /**
+     * 段头 8 字节，记录 [magic | userId | blogId | type | crc32] 28 字节
+     */
+    private static final int HEADER_SIZE = 8;
+
+    private static final int RECORD_SIZE = 28;
+
+    @TempDir
+    Path dir;
+
+    private ThumbProperties thumbProperties;
+
+    private RedisCircuitBreaker redisCircuitBreaker;
+
+    private final List<ThumbWriteAheadLog> wals = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        thumbProperties = new ThumbProperties();
+        thumbProperties.getWal().setDir(dir.toString());
+        thumbProperties.getWal().setSegmentBytes(HEADER_SIZE + RECORD_SIZE * 3);
+        redisCircuitBreaker = mock(RedisCircuitBreaker.class);
+        // 断路器断开，写入进入本地日志
+        when(redisCircuitBreaker.isClosed()).thenReturn(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wals.forEach(ThumbWriteAheadLog::destroy);
+    }
+
+    @Test
+    void replayAppliesEveryEntryInOrderAcrossSegments() throws IOException {
+        ThumbWriteAheadLog wal = newWal();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(wal.append(i, 100 + i, i % 2 == 0 ? 1 : -1));
+        }
+        // 每段 3 条记录
+        assertEquals(4, segments().size());
+
+        List<ThumbWriteAheadLog.Entry> replayed = new ArrayList<>();
+        assertEquals(10, wal.replay(replayed::addAll));
+
+        assertEquals(10, replayed.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(new ThumbWriteAheadLog.Entry(i, 100 + i, i % 2 == 0 ? 1 : -1), replayed.get(i));
+        }
+        assertTrue(segments().isEmpty());
+        verify(redisCircuitBreaker).close();
+    }
+
+    @Test
+    void appendReturnsFalseWhenBreakerIsClosed() throws IOException {
+        when(redisCircuitBreaker.isClosed()).thenReturn(true);
+        ThumbWriteAheadLog wal = newWal();
+
+        assertFalse(wal.append(1, 2, 1));
+        assertTrue(segments().isEmpty());
+    }
+
+    @Test
+    void failedReplayResumesFromLastAppliedBatch() throws IOException {
+        // 单段 600 条记录：第一批 500 条成功后失败，重试只回放剩余 100 条
+        thumbProperties.getWal().setSegmentBytes(HEADER_SIZE + RECORD_SIZE * 1000);
+        ThumbWriteAheadLog wal = newWal();
+        for (int i = 0; i < 600; i++) {
+            wal.append(i, 1, 1);
+        }
+
+        List<ThumbWriteAheadLog.Entry> replayed = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> wal.replay(batch -> {
+            if (!replayed.isEmpty()) {
+                throw new IllegalStateException("Redis 仍不可用");
+            }
+            replayed.addAll(batch);
+        }));
+        assertEquals(500, replayed.size());
+        verify(redisCircuitBreaker, never()).close();
+
+        assertEquals(100, wal.replay(replayed::addAll));
+        assertEquals(600, replayed.size());
+        for (int i = 0; i < 600; i++) {
+            assertEquals(i, replayed.get(i).userId());
+        }
+        verify(redisCircuitBreaker).close();
+    }
+
+    @Test
+    void restartReplaysLeftoverSegmentsAndStopsAtTornRecord() throws IOException {
+        ThumbWriteAheadLog wal = newWal();
+        for (int i = 0; i < 5; i++) {
+            wal.append(i, 1, 1);
+        }
+        wal.destroy();
+        wals.remove(wal);
+
+        // 模拟进程崩溃时第二段的第二条记录没有写完：crc 不匹配
+        List<Path> segments = segments();
+        assertEquals(2, segments.size());
+        try (FileChannel channel = FileChannel.open(segments.get(1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 0x12345678), HEADER_SIZE + RECORD_SIZE + 24);
+        }
+
+        ThumbWriteAheadLog restarted = newWal();
+        // 存在未回放的日志时启动即断开断路器，新的写入排在旧日志之后
+        verify(redisCircuitBreaker).trip(anyString());
+
+        List<ThumbWriteAheadLog.Entry> replayed = new ArrayList<>();
+        assertEquals(4, restarted.replay(replayed::addAll));
+        assertEquals(List.of(0L, 1L, 2L, 3L), replayed.stream().map(ThumbWriteAheadLog.Entry::userId).toList());
+        assertTrue(segments().isEmpty());
+    }
+
+    @Test
+    void restartWithWalDisabledLeavesBreakerClosed() throws IOException {
+        ThumbWriteAheadLog wal = newWal();
+        wal.append(1, 1, 1);
+        wal.destroy();
+        wals.remove(wal);
+
+        thumbProperties.getWal().setEnabled(false);
+        newWal();
+
+        // 断开后写入只能走本地日志，而日志未开启，所有写入都会失败
+        verify(redisCircuitBreaker, never()).trip(anyString());
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    void restartContinuesSegmentSequence() throws IOException {
+        ThumbWriteAheadLog wal = newWal();
+        for (int i = 0; i < 4; i++) {
+            wal.append(i, 1, 1);
+        }
+        wal.destroy();
+        wals.remove(wal);
+
+        ThumbWriteAheadLog restarted = newWal();
+        restarted.append(99, 1, 1);
+
+        List<Path> segments = segments();
+        assertEquals(3, segments.size());
+        assertEquals("00000000000000000002.wal", segments.get(2).getFileName().toString());
+
+        List<ThumbWriteAheadLog.Entry> replayed = new ArrayList<>();
+        assertEquals(5, restarted.replay(replayed::addAll));
+        assertEquals(99, replayed.get(4).userId());
+    }
+
+    private ThumbWriteAheadLog newWal() throws IOException {
+        ThumbWriteAheadLog wal = new ThumbWriteAheadLog();
+        ReflectionTestUtils.setField(wal, "thumbProperties", thumbProperties);
+        ReflectionTestUtils.setField(wal, "redisCircuitBreaker", redisCircuitBreaker);
+        wal.init();
+        wals.add(wal);
+        return wal;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+}
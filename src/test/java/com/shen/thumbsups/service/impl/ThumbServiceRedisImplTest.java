@@ -0,0 +1,120 @@
+package com.shen.thumbsups.service.impl;
+
+import com.shen.thumbsups.constant.RedisLuaScriptConstant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ThumbServiceRedisImplTest {
+
+    private static final RedisScript<Long> THUMB_SCRIPT = RedisLuaScriptConstant.THUMB_SCRIPT;
+
+    private static final RedisScript<Long> UNTHUMB_SCRIPT = RedisLuaScriptConstant.UNTHUMB_SCRIPT;
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private RedisScriptingCommands scriptingCommands;
+
+    private ThumbServiceRedisImpl thumbService;
+
+    /**
+     * 每次 pipeline 依次返回的结果，元素为 List 时正常返回，为异常时抛出
+     */
+    private final List<Object> pipelineOutcomes = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.getStringSerializer()).thenReturn((RedisSerializer) StringRedisSerializer.UTF_8);
+        scriptingCommands = mock(RedisScriptingCommands.class);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any(RedisSerializer.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            Object outcome = pipelineOutcomes.remove(0);
+            if (outcome instanceof RuntimeException e) {
+                throw e;
+            }
+            return outcome;
+        });
+        thumbService = new ThumbServiceRedisImpl();
+        ReflectionTestUtils.setField(thumbService, "redisTemplate", redisTemplate);
+    }
+
+    @Test
+    void evalShaOnlyWhenScriptsAreCached() {
+        pipelineOutcomes.add(List.of(1L, -1L));
+
+        List<Object> results = evalShaPipelined(List.of(THUMB_SCRIPT, UNTHUMB_SCRIPT));
+
+        assertEquals(List.of(1L, -1L), results);
+        verify(scriptingCommands, never()).scriptLoad(any());
+        verify(scriptingCommands).evalSha(eq(THUMB_SCRIPT.getSha1()), eq(ReturnType.INTEGER), anyInt(), any(byte[][].class));
+        verify(scriptingCommands).evalSha(eq(UNTHUMB_SCRIPT.getSha1()), eq(ReturnType.INTEGER), anyInt(), any(byte[][].class));
+    }
+
+    @Test
+    void noScriptLoadsMissingScriptAndRetriesOnlyFailedOperations() {
+        // 取消点赞脚本不在缓存中，点赞操作已经执行
+        pipelineOutcomes.add(new RedisPipelineException(noScript(), new ArrayList<>(List.of(1L, noScript(), noScript()))));
+        pipelineOutcomes.add(List.of(UNTHUMB_SCRIPT.getSha1()));
+        pipelineOutcomes.add(List.of(1L, -1L));
+
+        List<Object> results = evalShaPipelined(List.of(THUMB_SCRIPT, UNTHUMB_SCRIPT, UNTHUMB_SCRIPT));
+
+        assertEquals(List.of(1L, 1L, -1L), results);
+        verify(scriptingCommands).scriptLoad(UNTHUMB_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        verify(scriptingCommands, never()).scriptLoad(THUMB_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        verify(scriptingCommands, times(1)).evalSha(eq(THUMB_SCRIPT.getSha1()), eq(ReturnType.INTEGER), anyInt(), any(byte[][].class));
+        verify(scriptingCommands, times(4)).evalSha(eq(UNTHUMB_SCRIPT.getSha1()), eq(ReturnType.INTEGER), anyInt(), any(byte[][].class));
+    }
+
+    @Test
+    void otherPipelineErrorsAreRethrown() {
+        InvalidDataAccessApiUsageException wrongType = new InvalidDataAccessApiUsageException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        pipelineOutcomes.add(new RedisPipelineException(wrongType, new ArrayList<>(List.of(noScript(), wrongType))));
+
+        assertThrows(RedisPipelineException.class, () -> evalShaPipelined(List.of(THUMB_SCRIPT, UNTHUMB_SCRIPT)));
+        verify(scriptingCommands, never()).scriptLoad(any());
+    }
+
+    private List<Object> evalShaPipelined(List<RedisScript<Long>> scripts) {
+        List<byte[][]> keysAndArgsList = new ArrayList<>();
+        int[] numKeys = new int[scripts.size()];
+        for (int i = 0; i < scripts.size(); i++) {
+            keysAndArgsList.add(new byte[][]{("key" + i).getBytes(), String.valueOf(i).getBytes()});
+            numKeys[i] = 1;
+        }
+        return ReflectionTestUtils.invokeMethod(thumbService, "evalShaPipelined", scripts, keysAndArgsList, numKeys);
+    }
+
+    private static InvalidDataAccessApiUsageException noScript() {
+        return new InvalidDataAccessApiUsageException("NOSCRIPT No matching script. Please use EVAL.");
+    }
+}
@@ -0,0 +1,68 @@
+package com.shen.thumbsups.util;
+
+import com.shen.thumbsups.constant.ThumbConstant;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisKeyUtilTest {
+
+    private static final long BUCKET_SIZE = 1L << ThumbConstant.USER_THUMB_BITMAP_BUCKET_BITS;
+
+    @Test
+    void bitmapBucketAndOffsetSplitBlogId() {
+        assertEquals("thumb:bitmap:7:0", RedisKeyUtil.getUserThumbBitmapKey(7L, 0L));
+        assertEquals(0, RedisKeyUtil.getUserThumbBitmapOffset(0L));
+
+        // 桶内最后一位与下一个桶的第一位
+        assertEquals("thumb:bitmap:7:0", RedisKeyUtil.getUserThumbBitmapKey(7L, BUCKET_SIZE - 1));
+        assertEquals(BUCKET_SIZE - 1, RedisKeyUtil.getUserThumbBitmapOffset(BUCKET_SIZE - 1));
+        assertEquals("thumb:bitmap:7:1", RedisKeyUtil.getUserThumbBitmapKey(7L, BUCKET_SIZE));
+        assertEquals(0, RedisKeyUtil.getUserThumbBitmapOffset(BUCKET_SIZE));
+    }
+
+    @Test
+    void bitmapBucketAndOffsetRoundTripForSnowflakeIds() {
+        long[] blogIds = {1L, 4097L, 1_912_345_678_901_234_567L, Long.MAX_VALUE};
+        for (long blogId : blogIds) {
+            String key = RedisKeyUtil.getUserThumbBitmapKey(7L, blogId);
+            long bucket = Long.parseLong(key.substring(key.lastIndexOf(':') + 1));
+            long offset = RedisKeyUtil.getUserThumbBitmapOffset(blogId);
+
+            assertEquals(blogId, bucket * BUCKET_SIZE + offset);
+            assertTrue(offset >= 0 && offset < BUCKET_SIZE);
+        }
+    }
+
+    @Test
+    void syncAndChunkKeysKeepTempKeySuffix() {
+        String tempThumbKey = RedisKeyUtil.getTempThumbKey(1_745_000_000L, 3);
+
+        assertEquals("thumb:temp:{1745000000:3}", tempThumbKey);
+        assertEquals("thumb:sync:{1745000000:3}", RedisKeyUtil.getSyncThumbKey(tempThumbKey));
+        assertEquals("thumb:chunk:{1745000000:3}", RedisKeyUtil.getChunkThumbKey(tempThumbKey));
+        assertEquals("thumb:sync:{1745000000:3}#5", RedisKeyUtil.getSyncThumbKey(tempThumbKey, 5));
+        assertEquals("thumb:chunk:{1745000000:3}#5", RedisKeyUtil.getChunkThumbKey(tempThumbKey, 5));
+    }
+
+    @Test
+    void tempThumbKeyOfStripsPrefixAndPartition() {
+        String tempThumbKey = RedisKeyUtil.getTempThumbKey(1_745_000_000L, 3);
+
+        assertEquals(tempThumbKey, RedisKeyUtil.getTempThumbKeyOf(tempThumbKey));
+        assertEquals(tempThumbKey, RedisKeyUtil.getTempThumbKeyOf(RedisKeyUtil.getSyncThumbKey(tempThumbKey)));
+        assertEquals(tempThumbKey, RedisKeyUtil.getTempThumbKeyOf(RedisKeyUtil.getChunkThumbKey(tempThumbKey)));
+        assertEquals(tempThumbKey, RedisKeyUtil.getTempThumbKeyOf(RedisKeyUtil.getSyncThumbKey(tempThumbKey, 5)));
+        assertEquals(tempThumbKey, RedisKeyUtil.getTempThumbKeyOf(RedisKeyUtil.getChunkThumbKey(tempThumbKey, 12)));
+    }
+
+    @Test
+    void legacyTimeKeysKeepColonsInSuffix() {
+        String tempThumbKey = RedisKeyUtil.getTempThumbKey("12:30:40");
+
+        assertEquals("thumb:sync:12:30:40", RedisKeyUtil.getSyncThumbKey(tempThumbKey));
+        assertEquals("thumb:chunk:12:30:40#1", RedisKeyUtil.getChunkThumbKey(tempThumbKey, 1));
+        assertEquals(tempThumbKey, RedisKeyUtil.getTempThumbKeyOf("thumb:sync:12:30:40#7"));
+    }
+}